@@ -0,0 +1,453 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Order;
+import com.restaurant.orderManagement.model.enums.MealType;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runnable stress check for the order service. Many threads place orders, one at a time and in
+ * batches, while others deliver them and search the queue. Once they stop, the check confirms that no
+ * order was lost or handed out twice, that the meal type and customer name indexes agree with the
+ * queue, and that every order reached its customer's history.
+ * It lives in the checks source tree, which is compiled against the application classes but never
+ * packaged with them:
+ * javac -cp &lt;classes&gt; -d &lt;check classes&gt; checks/com/restaurant/orderManagement/service/OrderServiceStressCheck.java
+ * Run it from an empty directory, since the service keeps its data files in the working directory:
+ * java -cp &lt;classes&gt;:&lt;check classes&gt; com.restaurant.orderManagement.service.OrderServiceStressCheck [threads] [ordersPerThread]
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderServiceStressCheck
+{
+    private static final int DEFAULT_THREAD_COUNT = 4;
+    private static final int DEFAULT_ORDERS_PER_THREAD = 2500;
+    private static final int CUSTOMERS_PER_THREAD = 20;
+    private static final int BATCH_SIZE = 10;
+    private static final int DELIVERY_RUN_SIZE = 5;
+    private static final int MAX_REPORTED_PROBLEMS = 20;
+
+    private final OrderService orderService;
+    private final FoodFactory foodFactory;
+    private final int threadCount;
+    private final int ordersPerThread;
+    private final Map<Long, Order> placedOrders;
+    private final Map<Long, Order> deliveredOrders;
+    private final List<String> problems;
+    private final AtomicBoolean placingFinished;
+
+    /**
+     * Constructor for OrderServiceStressCheck
+     * @param orderService the service to put under load, with room in its queue for every order
+     * @param threadCount the number of threads placing orders, and of threads delivering them
+     * @param ordersPerThread the number of orders each placing thread places
+     */
+    public OrderServiceStressCheck(OrderService orderService, int threadCount, int ordersPerThread)
+    {
+        this.orderService = orderService;
+        this.foodFactory = new RestaurantFoodFactory();
+        this.threadCount = threadCount;
+        this.ordersPerThread = ordersPerThread;
+        this.placedOrders = new ConcurrentHashMap<Long, Order>();
+        this.deliveredOrders = new ConcurrentHashMap<Long, Order>();
+        this.problems = Collections.synchronizedList(new ArrayList<String>());
+        this.placingFinished = new AtomicBoolean();
+    }
+
+    /**
+     * Checks that the queue and its indexes account for every placed order
+     * exactly once. Runs after every thread has stopped, while the service is still open.
+     */
+    private void checkFinalState()
+    {
+        int totalOrders = threadCount * ordersPerThread;
+        if (placedOrders.size() != totalOrders)
+        {
+            reportProblem(totalOrders + " orders were placed but " + placedOrders.size() + " got distinct ids");
+        }
+        for (Long orderId : deliveredOrders.keySet())
+        {
+            if (!placedOrders.containsKey(orderId))
+            {
+                reportProblem("Order " + orderId + " was delivered but never placed");
+            }
+        }
+
+        List<Order> pendingOrders = orderService.getPendingOrders();
+        Set<Long> pendingIds = new HashSet<Long>();
+        for (Order order : pendingOrders)
+        {
+            if (!pendingIds.add(order.getOrderId()))
+            {
+                reportProblem("Order " + order.getOrderId() + " is queued twice");
+            }
+            if (deliveredOrders.containsKey(order.getOrderId()))
+            {
+                reportProblem("Order " + order.getOrderId() + " is still queued after it was delivered");
+            }
+        }
+        for (Long orderId : placedOrders.keySet())
+        {
+            if (!pendingIds.contains(orderId) && !deliveredOrders.containsKey(orderId))
+            {
+                reportProblem("Order " + orderId + " was lost: neither queued nor delivered");
+            }
+        }
+
+        for (MealType mealType : MealType.values())
+        {
+            Set<Long> expectedIds = new HashSet<Long>();
+            for (Order order : pendingOrders)
+            {
+                if (order.getMealType() == mealType)
+                {
+                    expectedIds.add(order.getOrderId());
+                }
+            }
+            int count = orderService.countOrdersByMealType(mealType);
+            if (count != expectedIds.size())
+            {
+                reportProblem("The meal type index counts " + count + " " + mealType + " orders but "
+                        + expectedIds.size() + " are queued");
+            }
+            Set<Long> filteredIds = collectIds(orderService.filterOrdersByMealType(mealType));
+            if (!filteredIds.equals(expectedIds))
+            {
+                reportProblem("Filtering by " + mealType + " found " + filteredIds.size() + " orders but "
+                        + expectedIds.size() + " are queued");
+            }
+        }
+
+        for (int thread = 0; thread < threadCount; thread++)
+        {
+            for (int customer = 0; customer < CUSTOMERS_PER_THREAD; customer++)
+            {
+                String customerName = getCustomerName(thread, customer);
+                Set<Long> expectedIds = new HashSet<Long>();
+                for (Order order : pendingOrders)
+                {
+                    if (order.getCustomerName().equals(customerName))
+                    {
+                        expectedIds.add(order.getOrderId());
+                    }
+                }
+                Set<Long> foundIds = collectIds(orderService.searchOrdersByCustomer(customerName));
+                if (!foundIds.equals(expectedIds))
+                {
+                    reportProblem("Searching for " + customerName + " found " + foundIds.size()
+                            + " orders but " + expectedIds.size() + " are queued");
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that every placed order reached its customer's history. Runs after the service is shut
+     * down, so every history record has been written.
+     */
+    private void checkHistory()
+    {
+        Map<String, Integer> placedPerCustomer = new HashMap<String, Integer>();
+        for (Order order : placedOrders.values())
+        {
+            placedPerCustomer.merge(order.getCustomerName(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : placedPerCustomer.entrySet())
+        {
+            try
+            {
+                int historySize = orderService.getCustomerHistory(entry.getKey()).size();
+                if (historySize != entry.getValue())
+                {
+                    reportProblem(entry.getKey() + " placed " + entry.getValue() + " orders but has "
+                            + historySize + " in their history");
+                }
+            }
+            catch (IOException e)
+            {
+                reportProblem("Could not read the history of " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Collects the ids of a list of orders
+     * @param orders the orders
+     * @return their ids
+     */
+    private static Set<Long> collectIds(List<Order> orders)
+    {
+        Set<Long> orderIds = new HashSet<Long>();
+        for (Order order : orders)
+        {
+            orderIds.add(order.getOrderId());
+        }
+        return orderIds;
+    }
+
+    /**
+     * Creates an order for one of a placing thread's customers, cycling through the menu so every
+     * meal type is queued
+     * @param thread the placing thread
+     * @param sequence the order's position in the thread's orders
+     * @return the new order
+     */
+    private Order createOrder(int thread, int sequence)
+    {
+        Order order = new Order(getCustomerName(thread, sequence % CUSTOMERS_PER_THREAD),
+                "04" + String.format("%08d", thread * ordersPerThread + sequence), "1 Stress Street");
+        String[] menuItems = foodFactory.getAvailableMenuItems();
+        order.addFoodItem(foodFactory.createMenuItemByName(menuItems[sequence % menuItems.length]));
+        return order;
+    }
+
+    /**
+     * Delivers ready orders, one at a time and in delivery runs, until all but a quarter of the orders
+     * have been delivered, so the final check also covers a non-empty queue. Stops early if placing
+     * finished short and the queue has run dry.
+     */
+    private void deliverOrders()
+    {
+        int deliveryTarget = threadCount * ordersPerThread * 3 / 4;
+        boolean deliverRun = false;
+        while (deliveredOrders.size() < deliveryTarget && !(placingFinished.get() && orderService.isQueueEmpty()))
+        {
+            List<Order> delivered = new ArrayList<Order>();
+            if (deliverRun)
+            {
+                for (List<Order> deliveryGroup : orderService.deliverOrders(DELIVERY_RUN_SIZE).values())
+                {
+                    delivered.addAll(deliveryGroup);
+                }
+            }
+            else
+            {
+                Order order = orderService.deliverNextOrder();
+                if (order != null)
+                {
+                    delivered.add(order);
+                }
+            }
+            deliverRun = !deliverRun;
+
+            if (delivered.isEmpty())
+            {
+                Thread.yield();
+            }
+            for (Order order : delivered)
+            {
+                if (deliveredOrders.putIfAbsent(order.getOrderId(), order) != null)
+                {
+                    reportProblem("Order " + order.getOrderId() + " was delivered twice");
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the name of one of a placing thread's customers. Every name has the same length, so no
+     * name contains another and a search for one customer finds only their orders.
+     * @param thread the placing thread
+     * @param customer the customer's number within the thread
+     * @return the customer name
+     */
+    private static String getCustomerName(int thread, int customer)
+    {
+        return String.format("Stress %03d-%03d", thread, customer);
+    }
+
+    /**
+     * Main method to run the stress check in the working directory, which should be empty
+     * @param arguments the number of placing and delivering threads and the number of orders each
+     *                  placing thread places, both optional
+     */
+    public static void main(String[] arguments)
+    {
+        String[] existingFiles = new File(".").list();
+        if (existingFiles != null && existingFiles.length > 0)
+        {
+            System.out.println("Error: Run the stress check from an empty directory; "
+                    + "it keeps the service's data files in the working directory.");
+            System.exit(2);
+        }
+        int threadCount = arguments.length > 0 ? Integer.parseInt(arguments[0]) : DEFAULT_THREAD_COUNT;
+        int ordersPerThread = arguments.length > 1 ? Integer.parseInt(arguments[1]) : DEFAULT_ORDERS_PER_THREAD;
+
+        OrderService orderService = new RestaurantOrderService(threadCount * ordersPerThread, 0);
+        boolean passed = new OrderServiceStressCheck(orderService, threadCount, ordersPerThread).run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Places one placing thread's orders, every few of them as a batch, retrying any order turned away
+     * by admission control
+     * @param thread the placing thread
+     * @throws InterruptedException if the thread is interrupted while waiting to retry
+     */
+    private void placeOrders(int thread) throws InterruptedException
+    {
+        int sequence = 0;
+        while (sequence < ordersPerThread)
+        {
+            List<Order> batch = new ArrayList<Order>();
+            int batchSize = sequence % (BATCH_SIZE * 2) == 0 ? Math.min(BATCH_SIZE, ordersPerThread - sequence) : 1;
+            for (int i = 0; i < batchSize; i++)
+            {
+                batch.add(createOrder(thread, sequence + i));
+            }
+            try
+            {
+                if (batch.size() == 1)
+                {
+                    orderService.placeOrder(batch.get(0));
+                }
+                else
+                {
+                    orderService.placeOrders(batch);
+                }
+            }
+            catch (OrderRejectedException e)
+            {
+                Thread.sleep(Math.max(1, e.getEstimatedWaitMillis()));
+                continue;
+            }
+            for (Order order : batch)
+            {
+                if (placedOrders.putIfAbsent(order.getOrderId(), order) != null)
+                {
+                    reportProblem("Order id " + order.getOrderId() + " was given to two orders");
+                }
+            }
+            sequence += batchSize;
+        }
+    }
+
+    /**
+     * Records a problem the check found
+     * @param problem the description of the problem
+     */
+    private void reportProblem(String problem)
+    {
+        problems.add(problem);
+    }
+
+    /**
+     * Runs the placing, delivering and searching threads to completion, checks the service's state,
+     * shuts the service down, checks the histories and prints the outcome
+     * @return true if no problem was found
+     */
+    public boolean run()
+    {
+        long startTime = System.nanoTime();
+        ExecutorService threads = Executors.newFixedThreadPool(threadCount * 2 + 1);
+        List<Future<?>> placers = new ArrayList<Future<?>>();
+        List<Future<?>> others = new ArrayList<Future<?>>();
+        for (int thread = 0; thread < threadCount; thread++)
+        {
+            int placingThread = thread;
+            placers.add(threads.submit(() ->
+            {
+                placeOrders(placingThread);
+                return null;
+            }));
+            others.add(threads.submit(this::deliverOrders));
+        }
+        others.add(threads.submit(this::searchOrders));
+
+        waitFor(placers);
+        placingFinished.set(true);
+        waitFor(others);
+        threads.shutdown();
+
+        checkFinalState();
+        orderService.shutdown();
+        checkHistory();
+
+        long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("Placed " + placedOrders.size() + " orders and delivered " + deliveredOrders.size()
+                + " on " + threadCount + " threads each in " + elapsedMillis + " ms.");
+        if (problems.isEmpty())
+        {
+            System.out.println("Stress check passed.");
+            return true;
+        }
+        System.out.println("Stress check failed with " + problems.size() + " problems:");
+        for (String problem : problems.subList(0, Math.min(problems.size(), MAX_REPORTED_PROBLEMS)))
+        {
+            System.out.println("  " + problem);
+        }
+        return false;
+    }
+
+    /**
+     * Searches the queue by customer name and meal type while orders are placed, checking that each
+     * search returns only matching orders and none of them twice
+     */
+    private void searchOrders()
+    {
+        int round = 0;
+        while (!placingFinished.get())
+        {
+            String customerName = getCustomerName(round % threadCount, round % CUSTOMERS_PER_THREAD);
+            List<Order> found = orderService.searchOrdersByCustomer(customerName);
+            for (Order order : found)
+            {
+                if (!order.getCustomerName().equalsIgnoreCase(customerName))
+                {
+                    reportProblem("Searching for " + customerName + " found an order for " + order.getCustomerName());
+                }
+            }
+            if (collectIds(found).size() != found.size())
+            {
+                reportProblem("Searching for " + customerName + " found an order twice");
+            }
+
+            MealType mealType = MealType.values()[round % MealType.values().length];
+            for (Order order : orderService.filterOrdersByMealType(mealType))
+            {
+                if (order.getMealType() != mealType)
+                {
+                    reportProblem("Filtering by " + mealType + " found a " + order.getMealType() + " order");
+                }
+            }
+            round++;
+        }
+    }
+
+    /**
+     * Waits for tasks to finish, recording any that failed
+     * @param tasks the tasks to wait for
+     */
+    private void waitFor(List<Future<?>> tasks)
+    {
+        for (Future<?> task : tasks)
+        {
+            try
+            {
+                task.get();
+            }
+            catch (ExecutionException e)
+            {
+                reportProblem("A worker thread failed: " + e.getCause());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                reportProblem("Interrupted while waiting for the worker threads");
+            }
+        }
+    }
+}
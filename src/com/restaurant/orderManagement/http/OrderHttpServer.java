@@ -0,0 +1,696 @@
+package com.restaurant.orderManagement.http;
+
+import com.restaurant.orderManagement.model.entity.*;
+import com.restaurant.orderManagement.model.enums.KitchenStation;
+import com.restaurant.orderManagement.model.enums.MealType;
+import com.restaurant.orderManagement.service.FoodFactory;
+import com.restaurant.orderManagement.service.OrderImporter;
+import com.restaurant.orderManagement.service.OrderRejectedException;
+import com.restaurant.orderManagement.service.OrderService;
+import com.restaurant.orderManagement.util.Json;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+
+/**
+ * Embedded HTTP endpoint that lets web and kiosk clients place and deliver orders without the console.
+ * Each request is handled on its own virtual thread when the JVM supports them, otherwise on a cached
+ * thread pool. The server only listens on the loopback address.
+ * <p>
+ * POST /orders takes {"customerName", "contactNumber", "deliveryAddress", "items"}, where each item is
+ * a menu item name such as "hawaiian_pizza", or an object {"type": "pizza", "toppings": ["HAM"]} or
+ * {"type": "pasta", "topping": "TOMATO"}. GET /orders lists the queue, or one page of it when pageSize=N
+ * is given, with the nextPageToken to pass back as pageToken for the page after, POST /orders/deliver delivers
+ * the next order the kitchen has finished, POST /orders/dispatch?max=N delivers up to N ready orders
+ * grouped by address, GET /orders/placed?from=T&to=T counts and lists the live and archived orders placed
+ * in a time range, given as ISO local date-times or as minutes=N for the last N minutes, and lists only the
+ * count when countOnly=true is given, GET /events streams order created, ready and delivered events as server-sent
+ * events, GET /menu lists the menu items and GET /stats reports the accepted, rejected and in-flight order counts,
+ * the queued orders of each meal type and the food items waiting for each kitchen station. An order turned away by admission control gets a 503 with a Retry-After estimate.
+ * <p>
+ * Admission control allows 10000 orders in flight and 1000 new orders a second by default. Start the JVM
+ * with -Drestaurant.maxQueueDepth=N or -Drestaurant.maxOrdersPerSecond=N to change them, where a rate of 0
+ * means no rate limit. Each food item occupies its kitchen station for no time by default; set
+ * -Drestaurant.itemPreparationMillis=N to simulate a preparation time.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderHttpServer
+{
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int CONNECTION_BACKLOG = 1024;
+    private static final int DEFAULT_DELIVERY_RUN_SIZE = 10;
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+    private final OrderService orderService;
+    private final FoodFactory foodFactory;
+    private final OrderImporter orderImporter;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Streams order events to one HTTP client as server-sent events, requesting the next event
+     * only once the previous one is written, so a slow client only fills its own buffer
+     */
+    private static class EventStreamSubscriber implements Flow.Subscriber<OrderEvent>
+    {
+        private final HttpExchange exchange;
+        private final OutputStream responseBody;
+        private Flow.Subscription subscription;
+
+        /**
+         * Constructor for EventStreamSubscriber
+         * @param exchange the client's open event stream
+         */
+        private EventStreamSubscriber(HttpExchange exchange)
+        {
+            this.exchange = exchange;
+            this.responseBody = exchange.getResponseBody();
+            this.subscription = null;
+        }
+
+        /**
+         * Ends the stream when the service shuts down
+         */
+        @Override
+        public void onComplete()
+        {
+            exchange.close();
+        }
+
+        /**
+         * Ends the stream if the publisher fails
+         * @param throwable the failure
+         */
+        @Override
+        public void onError(Throwable throwable)
+        {
+            exchange.close();
+        }
+
+        /**
+         * Writes one event to the client and asks for the next, or cancels if the client has gone away
+         * @param event the event to write
+         */
+        @Override
+        public void onNext(OrderEvent event)
+        {
+            String message = "event: " + event.getEventType().name().toLowerCase() + "\ndata: {\"eventTime\":"
+                    + Json.quote(event.getEventTime().toString()) + ",\"order\":" + toJson(event.getOrder()) + "}\n\n";
+            try
+            {
+                responseBody.write(message.getBytes(StandardCharsets.UTF_8));
+                responseBody.flush();
+            }
+            catch (IOException e)
+            {
+                // The client has gone away
+                subscription.cancel();
+                exchange.close();
+                return;
+            }
+            subscription.request(1);
+        }
+
+        /**
+         * Asks for the first event
+         * @param subscription the new subscription
+         */
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+    }
+
+    /**
+     * Constructor for OrderHttpServer. The port is bound immediately but no requests are handled until start.
+     * @param orderService the service orders are placed with
+     * @param foodFactory the factory food items are created with
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port could not be bound
+     */
+    public OrderHttpServer(OrderService orderService, FoodFactory foodFactory, int port) throws IOException
+    {
+        this.orderService = orderService;
+        this.foodFactory = foodFactory;
+        this.orderImporter = new OrderImporter(foodFactory);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                CONNECTION_BACKLOG);
+        this.executor = createRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/orders", this::handleOrders);
+        server.createContext("/orders/deliver", this::handleDeliver);
+        server.createContext("/orders/dispatch", this::handleDispatch);
+        server.createContext("/orders/placed", this::handlePlaced);
+        server.createContext("/events", this::handleEvents);
+        server.createContext("/menu", this::handleMenu);
+        server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Creates the executor requests are handled on: one virtual thread per request on Java 21 and later,
+     * looked up reflectively so the project still builds for Java 17, or a cached thread pool otherwise
+     * @return the request executor
+     */
+    private static ExecutorService createRequestExecutor()
+    {
+        try
+        {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, "order-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Reads a parameter from a query string
+     * @param query the raw query string, or null
+     * @param name the parameter name
+     * @return the decoded parameter value, or null if there is none
+     */
+    private static String getQueryParameter(String query, String name)
+    {
+        if (query != null)
+        {
+            for (String parameter : query.split("&"))
+            {
+                if (parameter.startsWith(name + "="))
+                {
+                    return URLDecoder.decode(parameter.substring(name.length() + 1), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Delivers the next order in the queue
+     * @param exchange the HTTP request and response
+     * @throws IOException if the response could not be sent
+     */
+    private void handleDeliver(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if (!"POST".equals(exchange.getRequestMethod()))
+            {
+                sendMethodNotAllowed(exchange, "POST");
+                return;
+            }
+
+            Order deliveredOrder = orderService.deliverNextOrder();
+            if (deliveredOrder == null)
+            {
+                sendError(exchange, 404, orderService.isQueueEmpty() ? "No orders to deliver" : "No orders are ready yet");
+                return;
+            }
+            sendJson(exchange, 200, toJson(deliveredOrder));
+        }
+    }
+
+    /**
+     * Delivers a run of ready orders grouped by delivery address. The run size is taken from the
+     * max query parameter.
+     * @param exchange the HTTP request and response
+     * @throws IOException if the response could not be sent
+     */
+    private void handleDispatch(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if (!"POST".equals(exchange.getRequestMethod()))
+            {
+                sendMethodNotAllowed(exchange, "POST");
+                return;
+            }
+
+            Map<String, List<Order>> deliveryGroups;
+            try
+            {
+                deliveryGroups = orderService.deliverOrders(parseRunSize(exchange.getRequestURI().getRawQuery()));
+            }
+            catch (IllegalArgumentException e)
+            {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+
+            StringBuilder json = new StringBuilder("[");
+            for (Map.Entry<String, List<Order>> group : deliveryGroups.entrySet())
+            {
+                if (json.length() > 1)
+                {
+                    json.append(',');
+                }
+                json.append("{\"address\":").append(Json.quote(group.getKey())).append(",\"orders\":[");
+                for (int i = 0; i < group.getValue().size(); i++)
+                {
+                    json.append(i > 0 ? "," : "").append(toJson(group.getValue().get(i)));
+                }
+                json.append("]}");
+            }
+            sendJson(exchange, 200, json.append(']').toString());
+        }
+    }
+
+    /**
+     * Opens a server-sent event stream of order lifecycle events. The exchange stays open after this
+     * returns and is closed when the client disconnects or the service shuts down.
+     * @param exchange the HTTP request and response
+     * @throws IOException if the response could not be started
+     */
+    private void handleEvents(HttpExchange exchange) throws IOException
+    {
+        if (!"GET".equals(exchange.getRequestMethod()))
+        {
+            try (exchange)
+            {
+                sendMethodNotAllowed(exchange, "GET");
+            }
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        exchange.getResponseBody().flush();
+        orderService.getOrderEvents().subscribe(new EventStreamSubscriber(exchange));
+    }
+
+    /**
+     * Lists the pre-defined menu items and their descriptions
+     * @param exchange the HTTP request and response
+     * @throws IOException if the response could not be sent
+     */
+    private void handleMenu(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if (!"GET".equals(exchange.getRequestMethod()))
+            {
+                sendMethodNotAllowed(exchange, "GET");
+                return;
+            }
+
+            StringBuilder json = new StringBuilder("[");
+            for (String menuItemName : foodFactory.getAvailableMenuItems())
+            {
+                if (json.length() > 1)
+                {
+                    json.append(',');
+                }
+                json.append("{\"name\":").append(Json.quote(menuItemName))
+                        .append(",\"description\":").append(Json.quote(foodFactory.getMenuItemDescription(menuItemName)))
+                        .append('}');
+            }
+            sendJson(exchange, 200, json.append(']').toString());
+        }
+    }
+
+    /**
+     * Places an order from a JSON body, or lists the queued orders, a page at a time if a page size is given
+     * @param exchange the HTTP request and response
+     * @throws IOException if the request could not be read or the response sent
+     */
+    private void handleOrders(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if ("GET".equals(exchange.getRequestMethod()))
+            {
+                String query = exchange.getRequestURI().getRawQuery();
+                if (getQueryParameter(query, "pageSize") != null)
+                {
+                    sendOrderPage(exchange, query);
+                    return;
+                }
+
+                StringBuilder json = new StringBuilder("[");
+                for (Order order : orderService.getPendingOrders())
+                {
+                    if (json.length() > 1)
+                    {
+                        json.append(',');
+                    }
+                    json.append(toJson(order));
+                }
+                sendJson(exchange, 200, json.append(']').toString());
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod()))
+            {
+                sendMethodNotAllowed(exchange, "GET, POST");
+                return;
+            }
+
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES)
+            {
+                sendError(exchange, 413, "Request body is too large");
+                return;
+            }
+
+            Order order;
+            try
+            {
+                order = parseOrder(new String(body, StandardCharsets.UTF_8));
+                orderService.placeOrder(order);
+            }
+            catch (IllegalArgumentException e)
+            {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            catch (OrderRejectedException e)
+            {
+                if (e.getEstimatedWaitMillis() >= 0)
+                {
+                    exchange.getResponseHeaders().set("Retry-After",
+                            String.valueOf(Math.max(1, (e.getEstimatedWaitMillis() + 999) / 1000)));
+                }
+                sendJson(exchange, 503, "{\"error\":" + Json.quote(e.getMessage())
+                        + ",\"estimatedWaitMillis\":" + e.getEstimatedWaitMillis() + "}");
+                return;
+            }
+            sendJson(exchange, 201, toJson(order));
+        }
+    }
+
+    /**
+     * Counts and lists the orders placed in a time range, live or archived. The range is taken from
+     * the from and to query parameters, to defaulting to now, or from the minutes parameter.
+     * @param exchange the HTTP request and response
+     * @throws IOException if the response could not be sent
+     */
+    private void handlePlaced(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if (!"GET".equals(exchange.getRequestMethod()))
+            {
+                sendMethodNotAllowed(exchange, "GET");
+                return;
+            }
+
+            String query = exchange.getRequestURI().getRawQuery();
+            LocalDateTime to;
+            LocalDateTime from;
+            try
+            {
+                String toParameter = getQueryParameter(query, "to");
+                to = toParameter == null ? LocalDateTime.now() : LocalDateTime.parse(toParameter);
+                String fromParameter = getQueryParameter(query, "from");
+                String minutesParameter = getQueryParameter(query, "minutes");
+                if (fromParameter != null)
+                {
+                    from = LocalDateTime.parse(fromParameter);
+                }
+                else if (minutesParameter != null)
+                {
+                    from = to.minusMinutes(Long.parseLong(minutesParameter));
+                }
+                else
+                {
+                    throw new IllegalArgumentException("Give a from time or a number of minutes");
+                }
+            }
+            catch (DateTimeParseException e)
+            {
+                sendError(exchange, 400, "Times must be ISO local date-times such as 2024-05-17T18:00");
+                return;
+            }
+            catch (NumberFormatException e)
+            {
+                sendError(exchange, 400, "minutes must be a number");
+                return;
+            }
+            catch (IllegalArgumentException e)
+            {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+
+            StringBuilder json = new StringBuilder("{\"from\":").append(Json.quote(from.toString()))
+                    .append(",\"to\":").append(Json.quote(to.toString()));
+            try
+            {
+                json.append(",\"count\":").append(orderService.countOrdersPlacedBetween(from, to));
+                if (!"true".equals(getQueryParameter(query, "countOnly")))
+                {
+                    List<Order> orders = orderService.getOrdersPlacedBetween(from, to);
+                    json.append(",\"orders\":[");
+                    for (int i = 0; i < orders.size(); i++)
+                    {
+                        json.append(i > 0 ? "," : "").append(toJson(orders.get(i)));
+                    }
+                    json.append(']');
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            catch (IOException e)
+            {
+                sendError(exchange, 500, "Could not read the order history");
+                return;
+            }
+            sendJson(exchange, 200, json.append('}').toString());
+        }
+    }
+
+    /**
+     * Reports the admission counters and in-flight order count, the number of events missed by slow event stream clients, the
+     * number of queued orders of each meal type and the number of food items waiting for each kitchen station
+     * @param exchange the HTTP request and response
+     * @throws IOException if the response could not be sent
+     */
+    private void handleStats(HttpExchange exchange) throws IOException
+    {
+        try (exchange)
+        {
+            if (!"GET".equals(exchange.getRequestMethod()))
+            {
+                sendMethodNotAllowed(exchange, "GET");
+                return;
+            }
+            StringBuilder json = new StringBuilder("{\"acceptedOrders\":").append(orderService.getAcceptedOrderCount())
+                    .append(",\"rejectedOrders\":").append(orderService.getRejectedOrderCount())
+                    .append(",\"ordersInFlight\":").append(orderService.getInFlightOrderCount())
+                    .append(",\"droppedEvents\":").append(orderService.getDroppedEventCount())
+                    .append(",\"queuedByMealType\":{");
+            for (MealType mealType : MealType.values())
+            {
+                json.append(mealType.ordinal() > 0 ? "," : "").append(Json.quote(mealType.name()))
+                        .append(':').append(orderService.countOrdersByMealType(mealType));
+            }
+            json.append("},\"waitingItemsByStation\":{");
+            for (KitchenStation station : KitchenStation.values())
+            {
+                json.append(station.ordinal() > 0 ? "," : "").append(Json.quote(station.name()))
+                        .append(':').append(orderService.countWaitingKitchenItems(station));
+            }
+            sendJson(exchange, 200, json.append("}}").toString());
+        }
+    }
+
+    /**
+     * Builds an order from a JSON request body, applying the same checks as the console
+     * @param body the request body
+     * @return the order, not yet placed
+     * @throws IllegalArgumentException if the body is not a valid order
+     */
+    private Order parseOrder(String body)
+    {
+        Object parsed = Json.parse(body);
+        if (!(parsed instanceof Map))
+        {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+
+        return orderImporter.createOrder((Map<?, ?>) parsed);
+    }
+
+    /**
+     * Reads the delivery run size from a query string
+     * @param query the raw query string, or null
+     * @return the max parameter, or the default run size if there is none
+     * @throws IllegalArgumentException if the max parameter is not a number
+     */
+    private static int parseRunSize(String query)
+    {
+        if (query != null)
+        {
+            for (String parameter : query.split("&"))
+            {
+                if (parameter.startsWith("max="))
+                {
+                    try
+                    {
+                        return Integer.parseInt(parameter.substring(4));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw new IllegalArgumentException("max must be a number");
+                    }
+                }
+            }
+        }
+        return DEFAULT_DELIVERY_RUN_SIZE;
+    }
+
+    /**
+     * Sends a JSON error response
+     * @param exchange the HTTP request and response
+     * @param status the HTTP status code
+     * @param message the error message
+     * @throws IOException if the response could not be sent
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException
+    {
+        sendJson(exchange, status, "{\"error\":" + Json.quote(message) + "}");
+    }
+
+    /**
+     * Sends a JSON response
+     * @param exchange the HTTP request and response
+     * @param status the HTTP status code
+     * @param json the response body
+     * @throws IOException if the response could not be sent
+     */
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException
+    {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Sends a 405 response listing the allowed methods
+     * @param exchange the HTTP request and response
+     * @param allowedMethods the methods the path accepts
+     * @throws IOException if the response could not be sent
+     */
+    private static void sendMethodNotAllowed(HttpExchange exchange, String allowedMethods) throws IOException
+    {
+        exchange.getResponseHeaders().set("Allow", allowedMethods);
+        sendError(exchange, 405, "Method not allowed");
+    }
+
+    /**
+     * Sends one page of the queued orders with the token for the next page
+     * @param exchange the HTTP request and response
+     * @param query the raw query string, with the pageSize and optional pageToken parameters
+     * @throws IOException if the response could not be sent
+     */
+    private void sendOrderPage(HttpExchange exchange, String query) throws IOException
+    {
+        OrderPage page;
+        try
+        {
+            page = orderService.getPendingOrdersPage(getQueryParameter(query, "pageToken"),
+                    Integer.parseInt(getQueryParameter(query, "pageSize")));
+        }
+        catch (NumberFormatException e)
+        {
+            sendError(exchange, 400, "pageSize must be a number");
+            return;
+        }
+        catch (IllegalArgumentException e)
+        {
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("{\"orders\":[");
+        for (int i = 0; i < page.getOrders().size(); i++)
+        {
+            json.append(i > 0 ? "," : "").append(toJson(page.getOrders().get(i)));
+        }
+        json.append("],\"nextPageToken\":")
+                .append(page.hasNextPage() ? Json.quote(page.getNextPageToken()) : "null")
+                .append(",\"totalCount\":").append(page.getTotalCount());
+        sendJson(exchange, 200, json.append('}').toString());
+    }
+
+    /**
+     * Gets the port the server is listening on
+     * @return the bound port
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Starts handling requests
+     */
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits briefly for requests in progress and stops the request threads
+     * @param delaySeconds the longest time to wait for requests in progress
+     */
+    public void stop(int delaySeconds)
+    {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Converts an order to JSON
+     * @param order the order
+     * @return the JSON object
+     */
+    private static String toJson(Order order)
+    {
+        StringBuilder json = new StringBuilder(256)
+                .append("{\"orderId\":").append(order.getOrderId())
+                .append(",\"customerName\":").append(Json.quote(order.getCustomerName()))
+                .append(",\"contactNumber\":").append(Json.quote(order.getContactNumber()))
+                .append(",\"deliveryAddress\":").append(Json.quote(order.getDeliveryAddress()))
+                .append(",\"orderTime\":").append(Json.quote(order.getOrderTime().toString()))
+                .append(",\"mealType\":").append(Json.quote(String.valueOf(order.getMealType())))
+                .append(",\"totalCost\":").append(String.format(Locale.ROOT, "%.2f", order.getTotalCost()))
+                .append(",\"items\":[");
+        List<Food> foodItems = order.getFoodItems();
+        for (int i = 0; i < foodItems.size(); i++)
+        {
+            if (i > 0)
+            {
+                json.append(',');
+            }
+            json.append("{\"description\":").append(Json.quote(foodItems.get(i).toString()))
+                    .append(",\"price\":").append(String.format(Locale.ROOT, "%.2f", foodItems.get(i).getPrice()))
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+}
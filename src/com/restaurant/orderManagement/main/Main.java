@@ -1,6 +1,16 @@
 package com.restaurant.orderManagement.main;
 
+import com.restaurant.orderManagement.http.OrderHttpServer;
+import com.restaurant.orderManagement.model.entity.Order;
+import com.restaurant.orderManagement.service.OrderImporter;
 import com.restaurant.orderManagement.service.OrderManager;
+import com.restaurant.orderManagement.service.OrderRejectedException;
+import com.restaurant.orderManagement.service.OrderService;
+import com.restaurant.orderManagement.service.RestaurantFoodFactory;
+import com.restaurant.orderManagement.service.RestaurantOrderService;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Main class to start the Takeaway Order Management System
@@ -9,12 +19,47 @@ import com.restaurant.orderManagement.service.OrderManager;
  */
 public class Main
 {
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final int MAX_PORT = 65535;
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
     /**
      * Main method to start the application
-     * @param arguments command line arguments (not used)
+     * @param arguments command line arguments, "migrate" to only convert legacy data files,
+     *                  "import" and a .csv or .json file to place a batch of orders from a partner system,
+     *                  or "serve" and an optional port to take orders over HTTP instead of the console.
+     *                  The admission limits of the console and the server are set with the
+     *                  restaurant.maxQueueDepth and restaurant.maxOrdersPerSecond system properties,
+     *                  and the kitchen's preparation time per food item with restaurant.itemPreparationMillis.
      */
     public static void main(String[] arguments)
     {
+        if (arguments.length > 0 && arguments[0].equals("migrate"))
+        {
+            if (!RestaurantOrderService.migrateLegacyData())
+            {
+                System.out.println("No legacy data files to migrate.");
+            }
+            return;
+        }
+        if (arguments.length > 1 && arguments[0].equals("import"))
+        {
+            importOrders(new File(arguments[1]));
+            return;
+        }
+        if (arguments.length > 0 && arguments[0].equals("serve"))
+        {
+            int port = arguments.length > 1 ? parsePort(arguments[1]) : DEFAULT_HTTP_PORT;
+            if (port < 0)
+            {
+                System.out.println("Usage: serve [port], where the port is 0-" + MAX_PORT + " and 0 picks any free port"
+                        + " (default " + DEFAULT_HTTP_PORT + ").");
+                return;
+            }
+            serve(port);
+            return;
+        }
+
         System.out.println("Starting Takeaway Order Management System...");
 
         OrderManager manager = new OrderManager();
@@ -22,4 +67,101 @@ public class Main
 
         System.out.println("Application terminated successfully.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Places every order in an import file as one batch. The file is read and checked in full first,
+     * so an invalid row places nothing.
+     * @param importFile the .csv or .json file to import
+     */
+    private static void importOrders(File importFile)
+    {
+        List<Order> orders;
+        try
+        {
+            orders = new OrderImporter(new RestaurantFoodFactory()).readFile(importFile);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Could not read " + importFile + ".");
+            return;
+        }
+        catch (IllegalArgumentException e)
+        {
+            System.out.println("Error: " + e.getMessage());
+            return;
+        }
+
+        OrderService orderService = new RestaurantOrderService();
+        try
+        {
+            long importStart = System.nanoTime();
+            orderService.placeOrders(orders);
+            System.out.println("Imported " + orders.size() + " orders from " + importFile + " in "
+                    + (System.nanoTime() - importStart) / 1_000_000 + " ms.");
+        }
+        catch (IllegalArgumentException | OrderRejectedException e)
+        {
+            System.out.println("Error: " + e.getMessage() + ". No orders were imported.");
+        }
+        finally
+        {
+            orderService.shutdown();
+        }
+    }
+
+    /**
+     * Reads a port number given on the command line
+     * @param argument the argument
+     * @return the port, or -1 if the argument is not a valid port
+     */
+    private static int parsePort(String argument)
+    {
+        try
+        {
+            int port = Integer.parseInt(argument.trim());
+            return port >= 0 && port <= MAX_PORT ? port : -1;
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Takes orders over HTTP until the process is stopped, then saves everything still pending
+     * @param port the port to listen on
+     */
+    private static void serve(int port)
+    {
+        // The JDK server leaves Nagle's algorithm on by default, which holds each small response back
+        // until the client's delayed ACK and limits a keep-alive connection to a few dozen requests a second.
+        // The server reads the property once, so it is set before any server is created.
+        if (System.getProperty(NO_DELAY_PROPERTY) == null)
+        {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+
+        System.out.println("Starting Takeaway Order Management System...");
+        OrderService orderService = new RestaurantOrderService();
+        OrderHttpServer httpServer;
+        try
+        {
+            httpServer = new OrderHttpServer(orderService, new RestaurantFoodFactory(), port);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Error: Could not listen on port " + port + ".");
+            orderService.shutdown();
+            return;
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+        {
+            httpServer.stop(1);
+            orderService.shutdown();
+            System.out.println("Application terminated successfully.");
+        }));
+        httpServer.start();
+        System.out.println("Taking orders at http://localhost:" + httpServer.getPort() + "/orders");
+    }
+}
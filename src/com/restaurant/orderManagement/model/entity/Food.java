@@ -11,6 +11,7 @@ import java.io.Serializable;
  */
 public abstract class Food implements Serializable
 {
+    private static final long serialVersionUID = 5698571824832527393L;
     protected static final double BASE_PRICE = 11.50;
     protected double price;
 
@@ -15,6 +15,8 @@ import java.time.format.DateTimeFormatter;
  */
 public class Order implements Serializable
 {
+    private static final long serialVersionUID = 91463242434629870L;
+
     private List<Food> foodItems;
     private String customerName;
     private String contactNumber;
@@ -22,6 +24,7 @@ public class Order implements Serializable
     private double totalCost;
     private MealType mealType;
     private LocalDateTime orderTime;
+    private long orderId;
 
     /**
      * Default constructor for Order
@@ -35,6 +38,7 @@ public class Order implements Serializable
         this.totalCost = 0.0;
         this.mealType = MealType.VEGAN;
         this.orderTime = LocalDateTime.now();
+        this.orderId = 0;
     }
 
     /**
@@ -52,6 +56,7 @@ public class Order implements Serializable
         this.totalCost = 0.0;
         this.mealType = MealType.VEGAN;
         this.orderTime = LocalDateTime.now();
+        this.orderId = 0;
     }
 
     /**
@@ -164,6 +169,15 @@ public class Order implements Serializable
         return mealType;
     }
 
+    /**
+     * Gets the order id
+     * @return the id identifying the order while it is queued, 0 if none has been assigned yet
+     */
+    public long getOrderId()
+    {
+        return orderId;
+    }
+
     /**
      * Gets the order time
      * @return the order time as LocalDateTime
@@ -182,6 +196,15 @@ public class Order implements Serializable
         return totalCost;
     }
 
+    /**
+     * Recalculates the total cost and meal type from the current prices of the food items
+     */
+    public void recalculateTotals()
+    {
+        calculateTotalCost();
+        determineMealType();
+    }
+
     /**
      * Sets the contact number
      * @param contactNumber the new contact number
@@ -220,6 +243,24 @@ public class Order implements Serializable
         determineMealType();
     }
 
+    /**
+     * Sets the order id
+     * @param orderId the id identifying the order while it is queued
+     */
+    public void setOrderId(long orderId)
+    {
+        this.orderId = orderId;
+    }
+
+    /**
+     * Sets the order time
+     * @param orderTime the time the order was placed
+     */
+    public void setOrderTime(LocalDateTime orderTime)
+    {
+        this.orderTime = orderTime;
+    }
+
     /**
      * Returns string representation of the order
      * @return detailed string description of the order
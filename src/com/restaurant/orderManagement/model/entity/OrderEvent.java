@@ -0,0 +1,67 @@
+package com.restaurant.orderManagement.model.entity;
+
+import com.restaurant.orderManagement.model.enums.OrderEventType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class representing a change in an order's lifecycle, published to downstream consumers
+ * such as kitchen displays, driver apps and analytics
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderEvent
+{
+    private final OrderEventType eventType;
+    private final Order order;
+    private final LocalDateTime eventTime;
+
+    /**
+     * Constructor for OrderEvent, timestamped now
+     * @param eventType what happened to the order
+     * @param order the order it happened to
+     */
+    public OrderEvent(OrderEventType eventType, Order order)
+    {
+        this.eventType = eventType;
+        this.order = order;
+        this.eventTime = LocalDateTime.now();
+    }
+
+    /**
+     * Gets when the event happened
+     * @return the event time
+     */
+    public LocalDateTime getEventTime()
+    {
+        return eventTime;
+    }
+
+    /**
+     * Gets what happened to the order
+     * @return the event type
+     */
+    public OrderEventType getEventType()
+    {
+        return eventType;
+    }
+
+    /**
+     * Gets the order the event happened to
+     * @return the order
+     */
+    public Order getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * Returns a string representation of the event
+     * @return the event type, order id and time
+     */
+    @Override
+    public String toString()
+    {
+        return eventType + " order " + order.getOrderId() + " at " + eventTime;
+    }
+}
@@ -0,0 +1,76 @@
+package com.restaurant.orderManagement.model.entity;
+
+import java.util.List;
+
+/**
+ * Class representing one page of a listing of orders, with the token that continues the listing
+ * from where the page ends. Only the orders on the page are held, so a caller that renders page by
+ * page only ever renders what it shows.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderPage
+{
+    private final List<Order> orders;
+    private final String nextPageToken;
+    private final int totalCount;
+
+    /**
+     * Constructor for OrderPage
+     * @param orders the orders on the page
+     * @param nextPageToken the token for the next page, or null if this is the last page
+     * @param totalCount the number of orders in the whole listing when the page was read
+     */
+    public OrderPage(List<Order> orders, String nextPageToken, int totalCount)
+    {
+        this.orders = orders;
+        this.nextPageToken = nextPageToken;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * Gets the token that continues the listing after this page
+     * @return the next page token, or null if this is the last page
+     */
+    public String getNextPageToken()
+    {
+        return nextPageToken;
+    }
+
+    /**
+     * Gets the orders on the page
+     * @return the orders, in listing order
+     */
+    public List<Order> getOrders()
+    {
+        return orders;
+    }
+
+    /**
+     * Gets the number of orders in the whole listing when the page was read
+     * @return the total order count
+     */
+    public int getTotalCount()
+    {
+        return totalCount;
+    }
+
+    /**
+     * Checks whether the listing continues after this page
+     * @return true if there is a next page
+     */
+    public boolean hasNextPage()
+    {
+        return nextPageToken != null;
+    }
+
+    /**
+     * Returns a string representation of the page
+     * @return the number of orders on the page and in the listing
+     */
+    @Override
+    public String toString()
+    {
+        return orders.size() + " of " + totalCount + " orders" + (hasNextPage() ? ", more to come" : "");
+    }
+}
@@ -10,6 +10,8 @@ import com.restaurant.orderManagement.model.enums.PastaTopping;
  */
 public class Pasta extends Food
 {
+    private static final long serialVersionUID = -6709176212291344787L;
+
     private PastaTopping topping;
 
     /**
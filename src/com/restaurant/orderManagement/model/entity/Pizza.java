@@ -13,6 +13,8 @@ import java.util.List;
  */
 public class Pizza extends Food
 {
+    private static final long serialVersionUID = -4283180209478410814L;
+
     private List<PizzaTopping> toppings;
 
     /**
@@ -0,0 +1,12 @@
+package com.restaurant.orderManagement.model.enums;
+
+/**
+ * Enum representing the kitchen stations food items are prepared at
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public enum KitchenStation
+{
+    OVEN,
+    STOVE
+}
@@ -0,0 +1,13 @@
+package com.restaurant.orderManagement.model.enums;
+
+/**
+ * Enum representing the points in an order's lifecycle that are published as events
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public enum OrderEventType
+{
+    CREATED,
+    READY,
+    DELIVERED
+}
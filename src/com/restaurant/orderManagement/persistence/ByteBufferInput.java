@@ -0,0 +1,163 @@
+package com.restaurant.orderManagement.persistence;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * DataInput view over a ByteBuffer, so records can be decoded straight out of a file's
+ * buffer or memory mapping without first copying them into a byte array or stream
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class ByteBufferInput implements DataInput
+{
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor for ByteBufferInput
+     * @param buffer the buffer to read from, starting at its current position
+     */
+    public ByteBufferInput(ByteBuffer buffer)
+    {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Checks that enough bytes remain for a read
+     * @param length the number of bytes about to be read
+     * @throws EOFException if fewer bytes remain
+     */
+    private void require(int length) throws EOFException
+    {
+        if (buffer.remaining() < length)
+        {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException
+    {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException
+    {
+        require(1);
+        return buffer.get();
+    }
+
+    @Override
+    public char readChar() throws IOException
+    {
+        require(2);
+        return buffer.getChar();
+    }
+
+    @Override
+    public double readDouble() throws IOException
+    {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    @Override
+    public float readFloat() throws IOException
+    {
+        require(4);
+        return buffer.getFloat();
+    }
+
+    @Override
+    public void readFully(byte[] bytes) throws IOException
+    {
+        readFully(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void readFully(byte[] bytes, int offset, int length) throws IOException
+    {
+        require(length);
+        buffer.get(bytes, offset, length);
+    }
+
+    @Override
+    public int readInt() throws IOException
+    {
+        require(4);
+        return buffer.getInt();
+    }
+
+    @Override
+    public String readLine() throws IOException
+    {
+        if (!buffer.hasRemaining())
+        {
+            return null;
+        }
+
+        StringBuilder line = new StringBuilder();
+        while (buffer.hasRemaining())
+        {
+            char character = (char) (buffer.get() & 0xFF);
+            if (character == '\n')
+            {
+                break;
+            }
+            if (character == '\r')
+            {
+                if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n')
+                {
+                    buffer.get();
+                }
+                break;
+            }
+            line.append(character);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public long readLong() throws IOException
+    {
+        require(8);
+        return buffer.getLong();
+    }
+
+    @Override
+    public short readShort() throws IOException
+    {
+        require(2);
+        return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException
+    {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException
+    {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public String readUTF() throws IOException
+    {
+        return DataInputStream.readUTF(this);
+    }
+
+    @Override
+    public int skipBytes(int length)
+    {
+        int skipped = Math.max(0, Math.min(length, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+}
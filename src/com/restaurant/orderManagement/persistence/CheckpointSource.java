@@ -0,0 +1,20 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.util.List;
+
+/**
+ * Interface for the owner of the in-memory order queue that a checkpoint copies.
+ * The copy is taken while the checkpointer holds the owner's state lock.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public interface CheckpointSource
+{
+    /**
+     * Copies the order queue so it can be written without holding the state lock
+     * @return a copy of the queued orders, head first
+     */
+    List<Order> copyOrderQueue();
+}
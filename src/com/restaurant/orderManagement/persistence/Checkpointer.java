@@ -0,0 +1,130 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Periodically writes a snapshot of the order queue on a background thread and
+ * truncates the journal up to it, so restart only replays a short journal tail
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class Checkpointer
+{
+    private final OrderJournal orderJournal;
+    private final JournalWriter journalWriter;
+    private final SnapshotStore snapshotStore;
+    private final CheckpointSource checkpointSource;
+    private final ReadWriteLock stateLock;
+    private final long intervalSeconds;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructor for Checkpointer
+     * @param orderJournal the journal to truncate
+     * @param journalWriter the writer the journal rotation is queued on
+     * @param snapshotStore the store order queue snapshots are written to
+     * @param checkpointSource the owner of the state to copy
+     * @param stateLock the lock whose read side is held by every mutation of the state and its journal
+     *                  records, and whose write side is taken here to capture a consistent copy
+     * @param intervalSeconds the time between background checkpoints
+     */
+    public Checkpointer(OrderJournal orderJournal, JournalWriter journalWriter, SnapshotStore snapshotStore,
+                        CheckpointSource checkpointSource, ReadWriteLock stateLock, long intervalSeconds)
+    {
+        this.orderJournal = orderJournal;
+        this.journalWriter = journalWriter;
+        this.snapshotStore = snapshotStore;
+        this.checkpointSource = checkpointSource;
+        this.stateLock = stateLock;
+        this.intervalSeconds = intervalSeconds;
+        this.executor = null;
+    }
+
+    /**
+     * Writes a snapshot of the order queue and deletes the journal segments it covers.
+     * The state is copied and the journal rotation queued under the write lock; the files are
+     * written after the lock is released, and old segments are deleted once the writer has
+     * moved past the rotation. Does nothing if no records were journaled since the last checkpoint.
+     * @throws IOException if a snapshot could not be written, in which case the journal is kept
+     */
+    public synchronized void checkpoint() throws IOException
+    {
+        List<Order> orders;
+        long generation;
+
+        stateLock.writeLock().lock();
+        try
+        {
+            if (journalWriter.getPendingRecordCount() == 0)
+            {
+                return;
+            }
+            orders = checkpointSource.copyOrderQueue();
+            generation = journalWriter.enqueueRotation();
+        }
+        finally
+        {
+            stateLock.writeLock().unlock();
+        }
+
+        snapshotStore.writeOrders(generation, orders);
+        journalWriter.flush();
+        orderJournal.deleteSegmentsBefore(generation);
+    }
+
+    /**
+     * Runs a checkpoint on the background thread, reporting failures instead of throwing
+     */
+    private void runScheduledCheckpoint()
+    {
+        try
+        {
+            checkpoint();
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not write order snapshot.");
+        }
+    }
+
+    /**
+     * Stops background checkpoints, waiting for one in progress to finish
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdown();
+            try
+            {
+                executor.awaitTermination(intervalSeconds, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Starts writing checkpoints in the background at the configured interval
+     */
+    public void start()
+    {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "order-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runScheduledCheckpoint, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,349 @@
+package com.restaurant.orderManagement.persistence;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Length-prefixed, CRC32C-checksummed record framing shared by every persisted file.
+ * Record files start with a FileFormat header, and each record is a variable-length payload size, the payload and a four byte checksum,
+ * so a reader can tell a complete record from one torn by a crash mid-write.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public final class ChecksummedRecords
+{
+    private static final int CHECKSUM_SIZE = 4;
+
+    /**
+     * Callback receiving each complete record of a file
+     */
+    public interface RecordVisitor
+    {
+        /**
+         * Called for every complete record, in file order
+         * @param payload a read-only view of the payload inside the file's buffer, valid only during the call
+         * @throws IOException if the payload could not be decoded
+         */
+        void visit(ByteBuffer payload) throws IOException;
+    }
+
+    /**
+     * The complete records found in a file and how much of the file they cover
+     */
+    public static class Scan
+    {
+        private final List<byte[]> records;
+        private final int formatVersion;
+        private final long validLength;
+        private final long discardedBytes;
+
+        /**
+         * Constructor for Scan
+         * @param records the payloads of the complete records, in file order
+         * @param formatVersion the format version from the file header, 0 if there is no complete header
+         * @param validLength the length of the file up to the end of the last complete record
+         * @param discardedBytes the number of bytes after the last complete record
+         */
+        private Scan(List<byte[]> records, int formatVersion, long validLength, long discardedBytes)
+        {
+            this.records = records;
+            this.formatVersion = formatVersion;
+            this.validLength = validLength;
+            this.discardedBytes = discardedBytes;
+        }
+
+        /**
+         * Gets the number of bytes after the last complete record
+         * @return the discarded byte count, 0 if the file ends cleanly
+         */
+        public long getDiscardedBytes()
+        {
+            return discardedBytes;
+        }
+
+        /**
+         * Gets the format version the records were written in
+         * @return the version from the file header, 0 if the file has no complete header
+         */
+        public int getFormatVersion()
+        {
+            return formatVersion;
+        }
+
+        /**
+         * Gets the payloads of the complete records
+         * @return the payloads in file order
+         */
+        public List<byte[]> getRecords()
+        {
+            return records;
+        }
+
+        /**
+         * Gets the length of the file up to the end of the last complete record
+         * @return the valid length in bytes
+         */
+        public long getValidLength()
+        {
+            return validLength;
+        }
+    }
+
+    /**
+     * Private constructor, the framing only has static methods
+     */
+    private ChecksummedRecords()
+    {
+    }
+
+    /**
+     * Computes the checksum of a payload
+     * @param payload the payload bytes
+     * @param offset the start of the payload in the array
+     * @param length the payload length
+     * @return the CRC32C checksum
+     */
+    private static int checksum(byte[] payload, int offset, int length)
+    {
+        CRC32C crc = new CRC32C();
+        crc.update(payload, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Computes the checksum of the remaining bytes of a buffer without moving its position
+     * @param payload the payload bytes
+     * @return the CRC32C checksum
+     */
+    private static int checksum(ByteBuffer payload)
+    {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Visits every complete record in a file. The file is read through its channel into one heap
+     * buffer and payloads are decoded in place, so nothing stays open or mapped afterwards and the
+     * caller is free to truncate or replace the file. Like scan, visiting stops at the first record
+     * that is cut short or fails its checksum.
+     * @param file the file to read
+     * @param format the kind of file expected, checked against its header
+     * @param visitor the callback receiving each record
+     * @return the length of the file up to the end of the last complete record, 0 if the file does
+     *         not exist or its header was cut short
+     * @throws IOException if the file could not be read, has the wrong header or the visitor failed
+     */
+    public static long forEachRecord(File file, FileFormat format, RecordVisitor visitor) throws IOException
+    {
+        if (!file.exists())
+        {
+            return 0;
+        }
+
+        ByteBuffer buffer = read(file);
+        if (buffer.remaining() < FileFormat.HEADER_SIZE)
+        {
+            return 0;
+        }
+        format.readHeader(new ByteBufferInput(buffer));
+        long validLength = buffer.position();
+        while (buffer.hasRemaining())
+        {
+            ByteBuffer payload;
+            try
+            {
+                payload = readRecord(buffer);
+            }
+            catch (IOException e)
+            {
+                // Record cut short, malformed or failing its checksum
+                break;
+            }
+            visitor.visit(payload);
+            validLength = buffer.position();
+        }
+        return validLength;
+    }
+
+    /**
+     * Maps a whole file read-only. The mapping stays valid after the channel is closed and pins the
+     * file until it is garbage collected, which on Windows stops the file from being truncated,
+     * replaced or deleted, so only files that are only ever appended to should be mapped.
+     * @param file the file to map
+     * @return the mapped bytes, positioned at the start of the file
+     * @throws IOException if the file could not be mapped or is larger than a mapping allows
+     */
+    public static MappedByteBuffer map(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("File too large to map: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    /**
+     * Reads a whole file into a heap buffer through its channel
+     * @param file the file to read
+     * @return the file's bytes, positioned at the start of the file
+     * @throws IOException if the file could not be read or is larger than a buffer allows
+     */
+    private static ByteBuffer read(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("File too large to read: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+            {
+                // Keep reading until the buffer is full or the file ends early
+            }
+            return buffer.flip();
+        }
+    }
+
+    /**
+     * Reads and verifies a single record from a buffer without copying its payload
+     * @param buffer the buffer to read from, advanced past the record
+     * @return a read-only view of the payload
+     * @throws IOException if the buffer ends early or the checksum does not match
+     */
+    public static ByteBuffer readRecord(ByteBuffer buffer) throws IOException
+    {
+        int start = buffer.position();
+        int length = OrderCodec.readVarInt(new ByteBufferInput(buffer));
+        if (length > buffer.remaining() - CHECKSUM_SIZE)
+        {
+            buffer.position(start);
+            throw new EOFException();
+        }
+
+        ByteBuffer payload = buffer.slice(buffer.position(), length).asReadOnlyBuffer();
+        int storedChecksum = buffer.getInt(buffer.position() + length);
+        if (storedChecksum != checksum(payload))
+        {
+            buffer.position(start);
+            throw new IOException("Record checksum mismatch");
+        }
+        buffer.position(buffer.position() + length + CHECKSUM_SIZE);
+        return payload;
+    }
+
+    /**
+     * Reads and verifies a single record
+     * @param input the input to read from
+     * @return the payload of the record
+     * @throws IOException if the input ends early or the checksum does not match
+     */
+    public static byte[] readRecord(DataInput input) throws IOException
+    {
+        byte[] payload = new byte[OrderCodec.readVarInt(input)];
+        input.readFully(payload);
+        if (input.readInt() != checksum(payload, 0, payload.length))
+        {
+            throw new IOException("Record checksum mismatch");
+        }
+        return payload;
+    }
+
+    /**
+     * Reads every complete record in a file. Reading stops at the first record that is
+     * cut short or fails its checksum; everything from there on is reported as discarded.
+     * A file too short to hold its header is reported as entirely discarded.
+     * @param file the file to scan
+     * @param format the kind of file expected, checked against its header
+     * @return the scan result, empty if the file does not exist
+     * @throws IOException if the file could not be read or has the wrong header
+     */
+    public static Scan scan(File file, FileFormat format) throws IOException
+    {
+        if (!file.exists())
+        {
+            return new Scan(new ArrayList<byte[]>(), 0, 0, 0);
+        }
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        List<byte[]> records = new ArrayList<byte[]>();
+        if (bytes.length < FileFormat.HEADER_SIZE)
+        {
+            return new Scan(records, 0, 0, bytes.length);
+        }
+
+        ByteArrayInputStream byteInput = new ByteArrayInputStream(bytes);
+        DataInputStream input = new DataInputStream(byteInput);
+        int formatVersion = format.readHeader(input);
+        int validLength = FileFormat.HEADER_SIZE;
+
+        while (validLength < bytes.length)
+        {
+            try
+            {
+                int length = OrderCodec.readVarInt(input);
+                if (length > byteInput.available() - CHECKSUM_SIZE)
+                {
+                    break;
+                }
+                int payloadOffset = bytes.length - byteInput.available();
+                input.skipBytes(length);
+                if (input.readInt() != checksum(bytes, payloadOffset, length))
+                {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                System.arraycopy(bytes, payloadOffset, payload, 0, length);
+                records.add(payload);
+                validLength = bytes.length - byteInput.available();
+            }
+            catch (IOException e)
+            {
+                // Length prefix cut short or malformed
+                break;
+            }
+        }
+        return new Scan(records, formatVersion, validLength, bytes.length - validLength);
+    }
+
+    /**
+     * Cuts a file back to the end of its last complete record
+     * @param file the file to truncate
+     * @param length the valid length to keep
+     * @throws IOException if the file could not be truncated
+     */
+    public static void truncate(File file, long length) throws IOException
+    {
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw"))
+        {
+            output.setLength(length);
+        }
+    }
+
+    /**
+     * Writes a single record
+     * @param output the output to write to
+     * @param payload the payload bytes
+     * @throws IOException if the output could not be written
+     */
+    public static void writeRecord(DataOutput output, byte[] payload) throws IOException
+    {
+        OrderCodec.writeVarLong(output, payload.length);
+        output.write(payload);
+        output.writeInt(checksum(payload, 0, payload.length));
+    }
+}
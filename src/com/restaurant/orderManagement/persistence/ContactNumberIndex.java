@@ -0,0 +1,177 @@
+package com.restaurant.orderManagement.persistence;
+
+import java.util.*;
+
+/**
+ * Index from contact number to the names of the customers who ordered with it. A contact number
+ * of 8-15 digits is packed into a primitive long together with its length, so leading zeros are
+ * kept. Entries are held in parallel arrays in the order they were added, and an open-addressing
+ * table of entry positions with linear probing finds them, so no key is boxed and no entry needs a
+ * node object. A number shared by several customers has one entry per customer. Entries are never
+ * removed, as history is never removed.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class ContactNumberIndex
+{
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_DIGITS = 8;
+    private static final int MAX_DIGITS = 15;
+
+    private long[] entryKeys;
+    private String[] entryNames;
+    private int entryCount;
+    private int[] slots;
+    private int mask;
+
+    /**
+     * Default constructor for ContactNumberIndex
+     */
+    public ContactNumberIndex()
+    {
+        this.entryKeys = new long[INITIAL_CAPACITY];
+        this.entryNames = new String[INITIAL_CAPACITY];
+        this.entryCount = 0;
+        this.slots = new int[INITIAL_CAPACITY * 2];
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * Adds a customer under a contact number, unless the pair is already indexed
+     * @param key the contact number key
+     * @param customerName the lowercase customer name
+     * @return true if the pair was new
+     */
+    public synchronized boolean add(long key, String customerName)
+    {
+        int slot = findSlot(key);
+        while (slots[slot] != 0)
+        {
+            int entry = slots[slot] - 1;
+            if (entryKeys[entry] == key && entryNames[entry].equals(customerName))
+            {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (entryCount == entryKeys.length)
+        {
+            grow();
+            slot = findSlot(key);
+            while (slots[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+        }
+        entryKeys[entryCount] = key;
+        entryNames[entryCount] = customerName;
+        slots[slot] = ++entryCount;
+        return true;
+    }
+
+    /**
+     * Finds the customers who ordered with a contact number
+     * @param key the contact number key
+     * @return the lowercase customer names, in the order they first used the number, empty if there are none
+     */
+    public synchronized List<String> find(long key)
+    {
+        List<String> customerNames = new ArrayList<String>(1);
+        for (int slot = findSlot(key); slots[slot] != 0; slot = (slot + 1) & mask)
+        {
+            int entry = slots[slot] - 1;
+            if (entryKeys[entry] == key)
+            {
+                customerNames.add(entryNames[entry]);
+            }
+        }
+        return customerNames;
+    }
+
+    /**
+     * Gets the table slot a key's probe sequence starts at
+     * @param key the contact number key
+     * @return the home slot
+     */
+    private int findSlot(long key)
+    {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Gets the customer name of an entry
+     * @param entry the entry position, in the order entries were added
+     * @return the lowercase customer name
+     */
+    public synchronized String getCustomerName(int entry)
+    {
+        return entryNames[entry];
+    }
+
+    /**
+     * Gets the contact number key of an entry
+     * @param entry the entry position, in the order entries were added
+     * @return the contact number key
+     */
+    public synchronized long getKey(int entry)
+    {
+        return entryKeys[entry];
+    }
+
+    /**
+     * Doubles the entry arrays and the slot table, and re-inserts every entry into the new table
+     */
+    private void grow()
+    {
+        entryKeys = Arrays.copyOf(entryKeys, entryKeys.length * 2);
+        entryNames = Arrays.copyOf(entryNames, entryNames.length * 2);
+        slots = new int[slots.length * 2];
+        mask = slots.length - 1;
+        for (int entry = 0; entry < entryCount; entry++)
+        {
+            int slot = findSlot(entryKeys[entry]);
+            while (slots[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = entry + 1;
+        }
+    }
+
+    /**
+     * Gets the number of entries
+     * @return the number of contact number and customer pairs indexed
+     */
+    public synchronized int size()
+    {
+        return entryCount;
+    }
+
+    /**
+     * Packs a contact number into its key without allocating
+     * @param contactNumber the contact number
+     * @return the digits as a number, shifted left four bits with the digit count in the low bits,
+     *         or 0 if the contact number is not 8-15 digits
+     */
+    public static long toKey(String contactNumber)
+    {
+        if (contactNumber == null || contactNumber.length() < MIN_DIGITS || contactNumber.length() > MAX_DIGITS)
+        {
+            return 0;
+        }
+
+        long number = 0;
+        for (int i = 0; i < contactNumber.length(); i++)
+        {
+            char digit = contactNumber.charAt(i);
+            if (digit < '0' || digit > '9')
+            {
+                return 0;
+            }
+            number = number * 10 + (digit - '0');
+        }
+        return (number << 4) | contactNumber.length();
+    }
+}
@@ -0,0 +1,1127 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Customer order history stored as one append-only segment file per customer.
+ * Adding an order only appends to that customer's segment, and a customer's orders
+ * are read from their own segment on the first lookup and cached afterwards.
+ * Each customer's history is guarded by its own lock, so orders for different customers
+ * are added, written and read without waiting for each other.
+ * A torn record at the end of a segment is cut off before anything else is appended to it.
+ * Old orders can be moved out of the live segments into a compressed archive, which is only
+ * read when a customer's archived orders are asked for.
+ * Customers can also be found by contact number, and orders by the time they were placed, through
+ * indexes that are kept in memory and appended to their own files as orders are written, so they
+ * never have to be rebuilt from the orders. The indexes hold an entry for every order ever placed, so
+ * they are only loaded on first use rather than when the store is opened; orders added before then
+ * are written to their segments as usual, but their index entries are held back until the indexes
+ * are loaded. A marker file exists while the index files may be missing such entries, so a process
+ * that ends before writing them leaves the indexes to be rebuilt rather than trusted.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class CustomerHistoryStore
+{
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final String ARCHIVE_DIRECTORY = "archive";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final String CONTACTS_FILE = "contacts.idx";
+    private static final String ORDER_TIMES_FILE = "times.idx";
+    private static final String INDEXES_PENDING_FILE = "indexes.pending";
+    private static final int ORDER_TIMES_IN_SECONDS_VERSION = 2;
+    private static final long UNKNOWN_ORDER_TIME = Long.MIN_VALUE;
+
+    private final File directory;
+    private final HistoryArchive historyArchive;
+    private final ConcurrentMap<String, CustomerHistory> customers;
+    private final Queue<CustomerHistory> unflushedCustomers;
+    private ContactNumberIndex contactIndex;
+    private final File contactsFile;
+    private int writtenContactCount;
+    private OrderTimeIndex orderTimeIndex;
+    private final File orderTimesFile;
+    private final Queue<Map.Entry<Long, String>> unwrittenOrderTimes;
+    private final File indexesPendingFile;
+    private volatile boolean indexesPending;
+    private final Object indexLoadLock;
+    private final List<Order> unindexedOrders;
+    private volatile boolean indexesLoaded;
+
+    /**
+     * History of one customer. Every field is guarded by the CustomerHistory itself.
+     * The oldest order time is the placement time in epoch seconds of the customer's oldest live order,
+     * Long.MAX_VALUE if they have none, or UNKNOWN_ORDER_TIME for a stored customer until their
+     * segment or the order time index has been read. The written record count is the number of records
+     * this process has appended to the customer's segment.
+     */
+    private static class CustomerHistory
+    {
+        private final String customerName;
+        private final List<Order> unwrittenOrders;
+        private List<Order> loadedOrders;
+        private boolean stored;
+        private boolean verified;
+        private long oldestOrderTime;
+        private int writtenRecordCount;
+
+        /**
+         * Constructor for CustomerHistory
+         * @param customerName the lowercase customer name
+         */
+        private CustomerHistory(String customerName)
+        {
+            this.customerName = customerName;
+            this.unwrittenOrders = new ArrayList<Order>();
+            this.loadedOrders = null;
+            this.stored = false;
+            this.verified = false;
+            this.oldestOrderTime = Long.MAX_VALUE;
+            this.writtenRecordCount = 0;
+        }
+    }
+
+    /**
+     * Constructor for CustomerHistoryStore
+     * @param directoryName the directory holding the customer segment files
+     */
+    public CustomerHistoryStore(String directoryName)
+    {
+        this.directory = new File(directoryName);
+        this.historyArchive = new HistoryArchive(new File(directory, ARCHIVE_DIRECTORY));
+        this.customers = new ConcurrentHashMap<String, CustomerHistory>();
+        this.unflushedCustomers = new ConcurrentLinkedQueue<CustomerHistory>();
+        this.contactIndex = new ContactNumberIndex();
+        this.contactsFile = new File(directory, CONTACTS_FILE);
+        this.writtenContactCount = 0;
+        this.orderTimeIndex = new OrderTimeIndex();
+        this.orderTimesFile = new File(directory, ORDER_TIMES_FILE);
+        this.unwrittenOrderTimes = new ConcurrentLinkedQueue<Map.Entry<Long, String>>();
+        this.indexesPendingFile = new File(directory, INDEXES_PENDING_FILE);
+        this.indexesPending = false;
+        this.indexLoadLock = new Object();
+        this.unindexedOrders = new ArrayList<Order>();
+        this.indexesLoaded = false;
+    }
+
+    /**
+     * Adds an order to its customer's history and indexes its contact number and placement time. The
+     * order is written to the customer's segment, a contact number new to the customer to the contact
+     * index file and the placement time to the order time index file, by the next call to flush.
+     * Only the customer's own history is locked, and nothing is allocated for a customer who
+     * already has a history. Until the indexes are loaded the order is only held back for them, and
+     * neither index file is written.
+     * @param order the order to add
+     */
+    public void append(Order order)
+    {
+        String customerName = order.getCustomerName().toLowerCase();
+        CustomerHistory customerHistory = customers.get(customerName);
+        if (customerHistory == null)
+        {
+            customerHistory = customers.computeIfAbsent(customerName, CustomerHistory::new);
+        }
+
+        synchronized (customerHistory)
+        {
+            if (customerHistory.loadedOrders != null)
+            {
+                customerHistory.loadedOrders.add(order);
+            }
+            if (customerHistory.unwrittenOrders.isEmpty())
+            {
+                unflushedCustomers.offer(customerHistory);
+            }
+            customerHistory.unwrittenOrders.add(order);
+            customerHistory.oldestOrderTime = Math.min(customerHistory.oldestOrderTime,
+                    toEpochSecond(order.getOrderTime()));
+        }
+
+        if (!indexesLoaded)
+        {
+            synchronized (unindexedOrders)
+            {
+                if (!indexesLoaded)
+                {
+                    unindexedOrders.add(order);
+                    return;
+                }
+            }
+        }
+        indexOrder(order, customerHistory.customerName);
+    }
+
+    /**
+     * Moves every order placed before a cutoff from the live segments into the archive.
+     * Customers are archived one at a time, so appends and lookups only wait for one customer,
+     * and an interrupted run stops before the next customer. Customers whose oldest live order is
+     * known to be no older than the cutoff are skipped without reading their segment.
+     * For each customer the archived block is on disk before the live segment is rewritten
+     * without those orders, and orders older than the archived cutoff are ignored when a
+     * segment is read, so a crash in between never shows an order twice.
+     * @param cutoff the time before which orders are archived
+     * @return the number of orders archived
+     * @throws IOException if the archive or a segment could not be written
+     * @throws IllegalArgumentException if the cutoff is in the future, which would hide new orders
+     */
+    public int archiveOlderThan(LocalDateTime cutoff) throws IOException
+    {
+        if (cutoff.isAfter(LocalDateTime.now()))
+        {
+            throw new IllegalArgumentException("Archive cutoff cannot be in the future");
+        }
+        ensureIndexesLoaded();
+        long cutoffSeconds = cutoff.toEpochSecond(ZoneOffset.UTC);
+        historyArchive.startRun();
+
+        int archivedCount = 0;
+        for (CustomerHistory customerHistory : new ArrayList<CustomerHistory>(customers.values()))
+        {
+            if (Thread.currentThread().isInterrupted())
+            {
+                break;
+            }
+            synchronized (customerHistory)
+            {
+                archivedCount += archiveCustomer(customerHistory, cutoffSeconds);
+            }
+        }
+        return archivedCount;
+    }
+
+    /**
+     * Moves a customer's orders placed before a cutoff from their live segment into the archive.
+     * The caller must hold the customer's lock.
+     * @param customerHistory the customer's history
+     * @param cutoffSeconds the cutoff in epoch seconds
+     * @return the number of orders archived
+     * @throws IOException if the archive or the segment could not be written
+     */
+    private int archiveCustomer(CustomerHistory customerHistory, long cutoffSeconds) throws IOException
+    {
+        if (customerHistory.oldestOrderTime >= cutoffSeconds)
+        {
+            return 0;
+        }
+        writeUnwrittenOrders(customerHistory);
+        if (!customerHistory.stored)
+        {
+            return 0;
+        }
+
+        List<Order> oldOrders = new ArrayList<Order>();
+        List<Order> recentOrders = new ArrayList<Order>();
+        for (Order order : readSegment(customerHistory))
+        {
+            if (order.getOrderTime().toEpochSecond(ZoneOffset.UTC) < cutoffSeconds)
+            {
+                oldOrders.add(order);
+            }
+            else
+            {
+                recentOrders.add(order);
+            }
+        }
+        if (oldOrders.isEmpty())
+        {
+            return 0;
+        }
+
+        historyArchive.append(customerHistory.customerName, oldOrders, cutoffSeconds);
+        rewriteSegment(customerHistory, recentOrders);
+        customerHistory.oldestOrderTime = findOldestOrderTime(recentOrders);
+        if (customerHistory.loadedOrders != null)
+        {
+            customerHistory.loadedOrders = recentOrders;
+        }
+        return oldOrders.size();
+    }
+
+    /**
+     * Removes the marker file once the index entries held back before the indexes were loaded are written
+     * @throws IOException if the marker file could not be removed
+     */
+    private synchronized void clearIndexesPending() throws IOException
+    {
+        if (indexesPending)
+        {
+            Files.deleteIfExists(indexesPendingFile.toPath());
+            indexesPending = false;
+        }
+    }
+
+    /**
+     * Writes the index entries still held back because the indexes were never loaded, loading them
+     * now, so the index files match the segments when the store is next opened. Nothing is loaded if
+     * no order was written while they were not. Called once the last flush is done.
+     * @throws IOException if the indexes could not be loaded or written, in which case they are
+     * rebuilt when the store is next opened and used
+     */
+    public void close() throws IOException
+    {
+        if (indexesPending)
+        {
+            ensureIndexesLoaded();
+            flush();
+        }
+    }
+
+    /**
+     * Checks whether a customer has any history, live or archived
+     * @param customerName the lowercase customer name
+     * @return true if the customer has placed at least one order
+     */
+    public boolean containsCustomer(String customerName)
+    {
+        return customers.containsKey(customerName) || historyArchive.containsCustomer(customerName);
+    }
+
+    /**
+     * Decodes a segment file name back into the customer name
+     * @param fileName the segment file name
+     * @return the lowercase customer name, or null if the file is not a segment
+     */
+    private static String decodeCustomerName(String fileName)
+    {
+        if (!fileName.endsWith(SEGMENT_EXTENSION))
+        {
+            return null;
+        }
+
+        String hex = fileName.substring(0, fileName.length() - SEGMENT_EXTENSION.length());
+        if (hex.length() % 2 != 0)
+        {
+            return null;
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0)
+            {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Counts the orders placed in a time range, live or archived, without reading any of them
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the number of orders placed in the range
+     * @throws IOException if the indexes had to be loaded and could not be
+     */
+    public int countOrdersBetween(LocalDateTime from, LocalDateTime to) throws IOException
+    {
+        ensureIndexesLoaded();
+        return orderTimeIndex.countBetween(toRangeBound(from), toRangeBound(to));
+    }
+
+    /**
+     * Loads the contact and order time indexes on first use. Both are read into new indexes, or built
+     * from every live segment and archived block if a file is missing, and only replace the empty ones
+     * once complete, so a failed load is simply tried again on the next use. The orders added since the
+     * store was opened are then indexed and later ones go straight to the indexes. Only queries and archive
+     * runs load the indexes, never a flush, so orders are written to their segments however long a load takes.
+     * @throws IOException if an index file, a segment or the archive could not be read, or a new file written
+     */
+    private void ensureIndexesLoaded() throws IOException
+    {
+        if (indexesLoaded)
+        {
+            return;
+        }
+
+        synchronized (indexLoadLock)
+        {
+            if (indexesLoaded)
+            {
+                return;
+            }
+
+            ContactNumberIndex loadedContacts = new ContactNumberIndex();
+            OrderTimeIndex loadedOrderTimes = new OrderTimeIndex();
+            boolean contactsLoaded = loadContactIndex(loadedContacts);
+            boolean orderTimesLoaded = loadOrderTimeIndex(loadedOrderTimes);
+            if (!contactsLoaded || !orderTimesLoaded)
+            {
+                rebuildIndexes(contactsLoaded ? null : loadedContacts, orderTimesLoaded ? null : loadedOrderTimes);
+            }
+            learnOldestOrderTimes(loadedOrderTimes);
+
+            synchronized (unindexedOrders)
+            {
+                contactIndex = loadedContacts;
+                writtenContactCount = loadedContacts.size();
+                orderTimeIndex = loadedOrderTimes;
+                for (Order order : unindexedOrders)
+                {
+                    indexOrder(order, customers.get(order.getCustomerName().toLowerCase()).customerName);
+                }
+                unindexedOrders.clear();
+                indexesLoaded = true;
+            }
+        }
+    }
+
+    /**
+     * Finds the customers who have ordered with a contact number, live or archived
+     * @param contactNumber the contact number, 8-15 digits
+     * @return the lowercase customer names, empty if there are none or the number is not valid
+     * @throws IOException if the indexes had to be loaded and could not be
+     */
+    public List<String> findCustomersByContactNumber(String contactNumber) throws IOException
+    {
+        ensureIndexesLoaded();
+        long contactKey = ContactNumberIndex.toKey(contactNumber);
+        return contactKey == 0 ? new ArrayList<String>() : contactIndex.find(contactKey);
+    }
+
+    /**
+     * Finds the placement time of the oldest of some orders
+     * @param orders the orders
+     * @return the oldest placement time in epoch seconds, Long.MAX_VALUE if there are no orders
+     */
+    private static long findOldestOrderTime(Collection<Order> orders)
+    {
+        long oldestOrderTime = Long.MAX_VALUE;
+        for (Order order : orders)
+        {
+            oldestOrderTime = Math.min(oldestOrderTime, toEpochSecond(order.getOrderTime()));
+        }
+        return oldestOrderTime;
+    }
+
+    /**
+     * Writes every order appended since the last flush, opening each affected customer's segment once,
+     * and then the contact numbers and placement times indexed since the last flush.
+     * Each customer is locked only while their own orders are written. The indexes are never loaded here,
+     * and until they are, only the segments are written and the index entries stay held back.
+     * @throws IOException if a segment or an index file could not be written
+     */
+    public void flush() throws IOException
+    {
+        CustomerHistory customerHistory;
+        while ((customerHistory = unflushedCustomers.poll()) != null)
+        {
+            synchronized (customerHistory)
+            {
+                try
+                {
+                    writeUnwrittenOrders(customerHistory);
+                }
+                catch (IOException e)
+                {
+                    // Keep the orders queued so the next flush tries them again
+                    unflushedCustomers.offer(customerHistory);
+                    throw e;
+                }
+            }
+        }
+        if (indexesLoaded)
+        {
+            writeNewContacts();
+            writeNewOrderTimes();
+            clearIndexesPending();
+        }
+    }
+
+    /**
+     * Gets a customer's archived orders, decompressing them from the archive on every call
+     * so they never stay in memory
+     * @param customerName the lowercase customer name
+     * @return the customer's archived orders, oldest first, empty if there are none
+     * @throws IOException if the archive could not be read
+     */
+    public List<Order> getArchivedHistory(String customerName) throws IOException
+    {
+        return historyArchive.readOrders(customerName);
+    }
+
+    /**
+     * Gets a slice of a customer's archived orders, decompressing only the archived blocks that hold it
+     * @param customerName the lowercase customer name
+     * @param fromIndex the position of the first order among the customer's archived orders
+     * @param maxOrders the most orders to return
+     * @return the archived orders in the slice, oldest first, empty if there are none
+     * @throws IOException if the archive could not be read
+     */
+    public List<Order> getArchivedHistoryPage(String customerName, int fromIndex, int maxOrders) throws IOException
+    {
+        return historyArchive.readOrders(customerName, fromIndex, maxOrders);
+    }
+
+    /**
+     * Gets the number of archived orders of a customer without reading them
+     * @param customerName the lowercase customer name
+     * @return the archived order count
+     */
+    public int getArchivedOrderCount(String customerName)
+    {
+        return historyArchive.getArchivedOrderCount(customerName);
+    }
+
+    /**
+     * Gets a customer's live history, reading it from the customer's segment on first use
+     * @param customerName the lowercase customer name
+     * @return a copy of the customer's live orders, oldest first, empty if there are none
+     * @throws IOException if the customer's segment could not be read
+     */
+    public List<Order> getHistory(String customerName) throws IOException
+    {
+        CustomerHistory customerHistory = customers.get(customerName);
+        if (customerHistory == null)
+        {
+            return new ArrayList<Order>();
+        }
+
+        synchronized (customerHistory)
+        {
+            return new ArrayList<Order>(loadHistory(customerHistory));
+        }
+    }
+
+    /**
+     * Gets part of a customer's live history, copying only the orders asked for
+     * @param customerName the lowercase customer name
+     * @param fromIndex the position of the first order, counted from the oldest live order
+     * @param maxOrders the most orders to return
+     * @return the customer's live orders from that position, oldest first, empty if there are none
+     * @throws IOException if the customer's segment could not be read
+     */
+    public List<Order> getHistoryPage(String customerName, int fromIndex, int maxOrders) throws IOException
+    {
+        CustomerHistory customerHistory = customers.get(customerName);
+        if (customerHistory == null)
+        {
+            return new ArrayList<Order>();
+        }
+
+        synchronized (customerHistory)
+        {
+            List<Order> history = loadHistory(customerHistory);
+            int start = Math.min(fromIndex, history.size());
+            return new ArrayList<Order>(history.subList(start, (int) Math.min((long) start + maxOrders, history.size())));
+        }
+    }
+
+    /**
+     * Gets the number of orders in a customer's live history
+     * @param customerName the lowercase customer name
+     * @return the live order count, 0 if there are none
+     * @throws IOException if the customer's segment could not be read
+     */
+    public int getHistorySize(String customerName) throws IOException
+    {
+        CustomerHistory customerHistory = customers.get(customerName);
+        if (customerHistory == null)
+        {
+            return 0;
+        }
+
+        synchronized (customerHistory)
+        {
+            return loadHistory(customerHistory).size();
+        }
+    }
+
+    /**
+     * Gets the orders placed in a time range, reading only the histories of the customers who
+     * ordered in it, and their archived orders only if the range reaches back into the archive
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the orders placed in the range, oldest first
+     * @throws IOException if a customer's segment or the archive could not be read, or the indexes loaded
+     */
+    public List<Order> getOrdersBetween(LocalDateTime from, LocalDateTime to) throws IOException
+    {
+        ensureIndexesLoaded();
+        long fromTime = toRangeBound(from);
+        long toTime = toRangeBound(to);
+        List<Order> orders = new ArrayList<Order>();
+        for (String customerName : orderTimeIndex.getCustomerNamesBetween(fromTime, toTime))
+        {
+            List<Order> customerOrders = getHistory(customerName);
+            if (historyArchive.getArchivedThrough(customerName) > fromTime)
+            {
+                customerOrders.addAll(historyArchive.readOrders(customerName));
+            }
+            for (Order order : customerOrders)
+            {
+                long orderTime = toEpochSecond(order.getOrderTime());
+                if (orderTime >= fromTime && orderTime < toTime)
+                {
+                    orders.add(order);
+                }
+            }
+        }
+        orders.sort(Comparator.comparing(Order::getOrderTime));
+        return orders;
+    }
+
+    /**
+     * Gets the segment file of a customer. The name is hex encoded so any customer name is a valid file name.
+     * @param customerName the lowercase customer name
+     * @return the segment file
+     */
+    private File getSegmentFile(String customerName)
+    {
+        StringBuilder fileName = new StringBuilder();
+        for (byte nameByte : customerName.getBytes(StandardCharsets.UTF_8))
+        {
+            fileName.append(Character.forDigit((nameByte >> 4) & 0xF, 16))
+                    .append(Character.forDigit(nameByte & 0xF, 16));
+        }
+        return new File(directory, fileName.append(SEGMENT_EXTENSION).toString());
+    }
+
+    /**
+     * Adds an order's placement time and contact number to the indexes, which must be loaded
+     * @param order the order
+     * @param customerName the customer's lowercase name, shared by all of the customer's entries
+     */
+    private void indexOrder(Order order, String customerName)
+    {
+        orderTimeIndex.add(toEpochSecond(order.getOrderTime()), customerName);
+        long contactKey = ContactNumberIndex.toKey(order.getContactNumber());
+        if (contactKey != 0)
+        {
+            contactIndex.add(contactKey, customerName);
+        }
+    }
+
+    /**
+     * Indexes the contact numbers and placement times of a customer's stored orders
+     * @param customerName the lowercase customer name, shared by all of the customer's entries
+     * @param orders the customer's orders
+     * @param contacts the contact index the contact numbers are added to, or null to skip them
+     * @param orderTimes the list the placement times are collected in, or null to skip them
+     */
+    private static void indexStoredOrders(String customerName, List<Order> orders, ContactNumberIndex contacts,
+                                          List<Map.Entry<Long, String>> orderTimes)
+    {
+        for (Order order : orders)
+        {
+            long contactKey = ContactNumberIndex.toKey(order.getContactNumber());
+            if (contacts != null && contactKey != 0)
+            {
+                contacts.add(contactKey, customerName);
+            }
+            if (orderTimes != null)
+            {
+                orderTimes.add(new AbstractMap.SimpleImmutableEntry<Long, String>(
+                        toEpochSecond(order.getOrderTime()), customerName));
+            }
+        }
+    }
+
+    /**
+     * Checks whether there is no history at all
+     * @return true if no customer has placed an order
+     */
+    public boolean isEmpty()
+    {
+        return customers.isEmpty() && !historyArchive.hasCustomers();
+    }
+
+    /**
+     * Opens the store by listing the customers that have a segment and reading the archive index,
+     * without reading any orders or the contact and order time indexes, so opening takes the same
+     * time however much history there is. Index files left behind by a process that ended with index
+     * entries still held back are removed, so they are rebuilt when the indexes are first used.
+     * The store must be opened before it is shared between threads.
+     * @throws IOException if the segment directory could not be created, stale index files removed or the archive index read
+     */
+    public void open() throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create history directory: " + directory);
+        }
+        if (indexesPendingFile.exists())
+        {
+            // A previous process wrote orders whose index entries never reached the index files
+            Files.deleteIfExists(contactsFile.toPath());
+            Files.deleteIfExists(orderTimesFile.toPath());
+            Files.delete(indexesPendingFile.toPath());
+        }
+
+        String[] fileNames = directory.list();
+        if (fileNames != null)
+        {
+            for (String fileName : fileNames)
+            {
+                String customerName = decodeCustomerName(fileName);
+                if (customerName != null)
+                {
+                    CustomerHistory customerHistory = customers.computeIfAbsent(customerName, CustomerHistory::new);
+                    customerHistory.stored = true;
+                    customerHistory.oldestOrderTime = UNKNOWN_ORDER_TIME;
+                }
+            }
+        }
+        historyArchive.open();
+    }
+
+    /**
+     * Sets the oldest live order time of every stored customer whose segment has not been read from a
+     * freshly loaded order time index, so archive runs can skip customers without decoding their segment.
+     * A customer's live orders are the indexed ones from their archived cutoff on, and the orders held
+     * back for the index. A customer with held back orders that are already written has had their segment
+     * read before the write, so only the unwritten ones matter here. Customers missing from the index stay
+     * unknown and are read by the next archive run.
+     * @param index the loaded order time index, before the held back orders are added to it
+     */
+    private void learnOldestOrderTimes(OrderTimeIndex index)
+    {
+        Map<String, Long> oldestOrderTimes = index.getOldestTimesFrom(historyArchive::getArchivedThrough);
+        for (Map.Entry<String, Long> entry : oldestOrderTimes.entrySet())
+        {
+            CustomerHistory customerHistory = customers.get(entry.getKey());
+            if (customerHistory == null)
+            {
+                continue;
+            }
+            synchronized (customerHistory)
+            {
+                if (customerHistory.oldestOrderTime == UNKNOWN_ORDER_TIME)
+                {
+                    customerHistory.oldestOrderTime = Math.min(entry.getValue(),
+                            findOldestOrderTime(customerHistory.unwrittenOrders));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets a customer's live history, reading it from the customer's segment on first use.
+     * The caller must hold the customer's lock.
+     * @param customerHistory the customer's history
+     * @return the cached live orders, oldest first
+     * @throws IOException if the customer's segment could not be read
+     */
+    private List<Order> loadHistory(CustomerHistory customerHistory) throws IOException
+    {
+        if (customerHistory.loadedOrders == null)
+        {
+            List<Order> history = new ArrayList<Order>();
+            if (customerHistory.stored)
+            {
+                history.addAll(readSegment(customerHistory));
+            }
+            history.addAll(customerHistory.unwrittenOrders);
+            customerHistory.loadedOrders = history;
+        }
+        return customerHistory.loadedOrders;
+    }
+
+    /**
+     * Loads the contact index file, cutting off a torn record at the end
+     * @param index the empty index the file's entries are added to
+     * @return true if the file exists
+     * @throws IOException if the file could not be read
+     */
+    private boolean loadContactIndex(ContactNumberIndex index) throws IOException
+    {
+        if (!contactsFile.exists())
+        {
+            return false;
+        }
+
+        ChecksummedRecords.Scan scan = ChecksummedRecords.scan(contactsFile, FileFormat.CONTACT_INDEX);
+        if (scan.getDiscardedBytes() > 0)
+        {
+            ChecksummedRecords.truncate(contactsFile, scan.getValidLength());
+        }
+        for (byte[] record : scan.getRecords())
+        {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+            index.add(OrderCodec.readVarLong(input), OrderCodec.readString(input));
+        }
+        return true;
+    }
+
+    /**
+     * Loads the order time index file, cutting off a torn record at the end. The file is written
+     * customer by customer, so its times are read into arrays and sorted once. Every entry of a
+     * customer shares one copy of the customer's name.
+     * @param index the empty index the file's entries are added to
+     * @return true if the file exists in the current format
+     * @throws IOException if the file could not be read, or an outdated file deleted
+     */
+    private boolean loadOrderTimeIndex(OrderTimeIndex index) throws IOException
+    {
+        if (!orderTimesFile.exists())
+        {
+            return false;
+        }
+
+        ChecksummedRecords.Scan scan = ChecksummedRecords.scan(orderTimesFile, FileFormat.ORDER_TIME_INDEX);
+        if (scan.getFormatVersion() < ORDER_TIMES_IN_SECONDS_VERSION)
+        {
+            // Written in milliseconds, or without a complete header; built again from the orders
+            Files.delete(orderTimesFile.toPath());
+            return false;
+        }
+        if (scan.getDiscardedBytes() > 0)
+        {
+            ChecksummedRecords.truncate(orderTimesFile, scan.getValidLength());
+        }
+        Map<String, String> sharedNames = new HashMap<String, String>();
+        for (String customerName : customers.keySet())
+        {
+            sharedNames.put(customerName, customerName);
+        }
+        long[] orderTimes = new long[1024];
+        String[] customerNames = new String[orderTimes.length];
+        int timeCount = 0;
+        for (byte[] record : scan.getRecords())
+        {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+            int entryCount = OrderCodec.readVarInt(input);
+            if (timeCount + entryCount > orderTimes.length)
+            {
+                int capacity = Math.max(orderTimes.length * 2, timeCount + entryCount);
+                orderTimes = Arrays.copyOf(orderTimes, capacity);
+                customerNames = Arrays.copyOf(customerNames, capacity);
+            }
+            for (int i = 0; i < entryCount; i++)
+            {
+                orderTimes[timeCount] = OrderCodec.readVarLong(input);
+                customerNames[timeCount++] = sharedNames.computeIfAbsent(OrderCodec.readString(input), name -> name);
+            }
+        }
+        index.addAll(orderTimes, customerNames, timeCount);
+        return true;
+    }
+
+    /**
+     * Creates the marker file before the first order is written while the indexes are not loaded,
+     * and forces it to disk, so the order is never on disk without either its index entries or the marker
+     * @throws IOException if the marker file could not be created
+     */
+    private synchronized void markIndexesPending() throws IOException
+    {
+        if (!indexesPending)
+        {
+            try (FileOutputStream fileOutput = new FileOutputStream(indexesPendingFile))
+            {
+                fileOutput.getFD().sync();
+            }
+            indexesPending = true;
+        }
+    }
+
+    /**
+     * Builds the missing indexes from every live segment and archived block, reading each customer's
+     * orders once, and writes their files. Placement times are indexed in bulk, as customers are read
+     * one after another rather than in time order. The records this process has appended to a segment are
+     * left out, as they belong to orders held back for the indexes, which are indexed once they are loaded.
+     * @param contacts the empty contact index to build, or null if it was loaded
+     * @param timeIndex the empty order time index to build, or null if it was loaded
+     * @throws IOException if a segment or the archive could not be read, or an index file written
+     */
+    private void rebuildIndexes(ContactNumberIndex contacts, OrderTimeIndex timeIndex) throws IOException
+    {
+        List<Map.Entry<Long, String>> orderTimes = timeIndex != null ? new ArrayList<Map.Entry<Long, String>>() : null;
+        for (CustomerHistory customerHistory : customers.values())
+        {
+            List<Order> orders;
+            synchronized (customerHistory)
+            {
+                orders = customerHistory.stored ? readSegment(customerHistory) : new ArrayList<Order>();
+                // Appended records are the last ones in the segment
+                orders = orders.subList(0, Math.max(0, orders.size() - customerHistory.writtenRecordCount));
+            }
+            indexStoredOrders(customerHistory.customerName, orders, contacts, orderTimes);
+        }
+        for (String customerName : historyArchive.getCustomerNames())
+        {
+            CustomerHistory customerHistory = customers.get(customerName);
+            indexStoredOrders(customerHistory != null ? customerHistory.customerName : customerName,
+                    historyArchive.readOrders(customerName), contacts, orderTimes);
+        }
+
+        if (contacts != null)
+        {
+            writeContacts(contacts, 0);
+        }
+        if (timeIndex != null)
+        {
+            long[] times = new long[orderTimes.size()];
+            String[] customerNames = new String[orderTimes.size()];
+            for (int i = 0; i < times.length; i++)
+            {
+                times[i] = orderTimes.get(i).getKey();
+                customerNames[i] = orderTimes.get(i).getValue();
+            }
+            timeIndex.addAll(times, customerNames, times.length);
+            writeOrderTimes(orderTimes);
+        }
+    }
+
+    /**
+     * Reads every complete record in a customer's segment, decoding orders directly from one buffer
+     * read from the file, and cuts off a torn record at the end. The segment is not memory-mapped,
+     * since it is truncated here and replaced by rewriteSegment.
+     * Orders older than the customer's archived cutoff are left over from an interrupted
+     * archive run and are skipped. The customer's oldest live order time is worked out again
+     * from what was read.
+     * The caller must hold the customer's lock.
+     * @param customerHistory the customer's history
+     * @return the customer's stored live orders, oldest first
+     * @throws IOException if the segment could not be read
+     */
+    private List<Order> readSegment(CustomerHistory customerHistory) throws IOException
+    {
+        File segmentFile = getSegmentFile(customerHistory.customerName);
+        long archivedThrough = historyArchive.getArchivedThrough(customerHistory.customerName);
+        List<Order> orders = new ArrayList<Order>();
+        long validLength = ChecksummedRecords.forEachRecord(segmentFile, FileFormat.HISTORY_SEGMENT, payload ->
+        {
+            Order order = OrderCodec.readOrder(new ByteBufferInput(payload));
+            if (order.getOrderTime().toEpochSecond(ZoneOffset.UTC) >= archivedThrough)
+            {
+                orders.add(order);
+            }
+        });
+        if (segmentFile.length() > validLength)
+        {
+            ChecksummedRecords.truncate(segmentFile, validLength);
+        }
+        customerHistory.verified = true;
+        customerHistory.oldestOrderTime = Math.min(findOldestOrderTime(orders),
+                findOldestOrderTime(customerHistory.unwrittenOrders));
+        return orders;
+    }
+
+    /**
+     * Replaces a customer's segment with the given orders. The new segment is written to a
+     * temporary file and moved over the old one, and removed entirely if there are no orders.
+     * The caller must hold the customer's lock.
+     * @param customerHistory the customer's history
+     * @param orders the orders the segment should hold
+     * @throws IOException if the segment could not be written
+     */
+    private void rewriteSegment(CustomerHistory customerHistory, List<Order> orders) throws IOException
+    {
+        File segmentFile = getSegmentFile(customerHistory.customerName);
+        if (orders.isEmpty())
+        {
+            Files.deleteIfExists(segmentFile.toPath());
+            customerHistory.stored = false;
+            return;
+        }
+
+        File temporaryFile = new File(directory, segmentFile.getName() + TEMPORARY_EXTENSION);
+        try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            FileFormat.HISTORY_SEGMENT.writeHeader(output);
+            for (Order order : orders)
+            {
+                ChecksummedRecords.writeRecord(output, OrderCodec.encode(order));
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        SnapshotStore.replaceFile(temporaryFile, segmentFile);
+    }
+
+    /**
+     * Appends entries of a contact index to the contact index file as checksummed records and forces
+     * them to disk, starting the file if there is none
+     * @param index the contact index
+     * @param fromEntry the position of the first entry to write
+     * @return the number of entries in the index, all of which are now written
+     * @throws IOException if the file could not be written
+     */
+    private synchronized int writeContacts(ContactNumberIndex index, int fromEntry) throws IOException
+    {
+        int contactCount = index.size();
+        boolean newFile = contactsFile.length() == 0;
+        try (FileOutputStream fileOutput = new FileOutputStream(contactsFile, true))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            if (newFile)
+            {
+                FileFormat.CONTACT_INDEX.writeHeader(output);
+            }
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(32);
+            DataOutputStream payloadOutput = new DataOutputStream(payload);
+            for (int entry = fromEntry; entry < contactCount; entry++)
+            {
+                payload.reset();
+                OrderCodec.writeVarLong(payloadOutput, index.getKey(entry));
+                OrderCodec.writeString(payloadOutput, index.getCustomerName(entry));
+                ChecksummedRecords.writeRecord(output, payload.toByteArray());
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        return contactCount;
+    }
+
+    /**
+     * Appends the contact numbers indexed since the last write to the contact index file
+     * @throws IOException if the file could not be written
+     */
+    private synchronized void writeNewContacts() throws IOException
+    {
+        if (contactIndex.size() != writtenContactCount)
+        {
+            writtenContactCount = writeContacts(contactIndex, writtenContactCount);
+        }
+    }
+
+    /**
+     * Appends the placement times of the orders written to segments since the last write to the order
+     * time index file. If the file could not be written they are kept for the next attempt.
+     * @throws IOException if the file could not be written
+     */
+    private synchronized void writeNewOrderTimes() throws IOException
+    {
+        List<Map.Entry<Long, String>> orderTimes = new ArrayList<Map.Entry<Long, String>>();
+        Map.Entry<Long, String> orderTime;
+        while ((orderTime = unwrittenOrderTimes.poll()) != null)
+        {
+            orderTimes.add(orderTime);
+        }
+        if (orderTimes.isEmpty() && orderTimesFile.exists())
+        {
+            return;
+        }
+
+        try
+        {
+            writeOrderTimes(orderTimes);
+        }
+        catch (IOException e)
+        {
+            // Written again with the next flush
+            unwrittenOrderTimes.addAll(orderTimes);
+            throw e;
+        }
+    }
+
+    /**
+     * Appends placement times to the order time index file as one checksummed record and forces it to disk
+     * @param orderTimes the placement times in epoch seconds and the customer name of each
+     * @throws IOException if the file could not be written
+     */
+    private synchronized void writeOrderTimes(List<Map.Entry<Long, String>> orderTimes) throws IOException
+    {
+        boolean newFile = orderTimesFile.length() == 0;
+        try (FileOutputStream fileOutput = new FileOutputStream(orderTimesFile, true))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            if (newFile)
+            {
+                FileFormat.ORDER_TIME_INDEX.writeHeader(output);
+            }
+            if (!orderTimes.isEmpty())
+            {
+                ByteArrayOutputStream payload = new ByteArrayOutputStream(16 * orderTimes.size());
+                DataOutputStream payloadOutput = new DataOutputStream(payload);
+                OrderCodec.writeVarLong(payloadOutput, orderTimes.size());
+                for (Map.Entry<Long, String> orderTime : orderTimes)
+                {
+                    OrderCodec.writeVarLong(payloadOutput, orderTime.getKey());
+                    OrderCodec.writeString(payloadOutput, orderTime.getValue());
+                }
+                ChecksummedRecords.writeRecord(output, payload.toByteArray());
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+    }
+
+    /**
+     * Appends the orders added since the customer's last write to their segment as checksummed
+     * records, forces them to disk and queues their placement times for the order time index file. The first append in a process checks the end of an
+     * existing segment, so new records never follow a torn one. While the indexes are not loaded, the
+     * marker file is created first, as the index entries of these orders are held back.
+     * The caller must hold the customer's lock.
+     * @param customerHistory the customer's history
+     * @throws IOException if the segment could not be written
+     */
+    private void writeUnwrittenOrders(CustomerHistory customerHistory) throws IOException
+    {
+        if (customerHistory.unwrittenOrders.isEmpty())
+        {
+            return;
+        }
+        if (!customerHistory.verified && customerHistory.stored)
+        {
+            readSegment(customerHistory);
+        }
+        customerHistory.verified = true;
+        if (!indexesLoaded)
+        {
+            markIndexesPending();
+        }
+
+        File segmentFile = getSegmentFile(customerHistory.customerName);
+        boolean newSegment = segmentFile.length() == 0;
+        try (FileOutputStream fileOutput = new FileOutputStream(segmentFile, true))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            if (newSegment)
+            {
+                FileFormat.HISTORY_SEGMENT.writeHeader(output);
+            }
+            for (Order order : customerHistory.unwrittenOrders)
+            {
+                ChecksummedRecords.writeRecord(output, OrderCodec.encode(order));
+            }
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        customerHistory.stored = true;
+        customerHistory.writtenRecordCount += customerHistory.unwrittenOrders.size();
+        for (Order order : customerHistory.unwrittenOrders)
+        {
+            unwrittenOrderTimes.offer(new AbstractMap.SimpleImmutableEntry<Long, String>(
+                    toEpochSecond(order.getOrderTime()), customerHistory.customerName));
+        }
+        customerHistory.unwrittenOrders.clear();
+    }
+
+    /**
+     * Converts a time to whole epoch seconds, taking stored times as UTC like the rest of the history.
+     * Segments keep order times to the second, so indexing and range checks use the same precision and
+     * an order falls on the same side of a range boundary whether it was read from memory or a segment.
+     * @param time the time
+     * @return the epoch seconds
+     */
+    private static long toEpochSecond(LocalDateTime time)
+    {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Converts a range boundary to the first whole epoch second at or after it, so an order's time to
+     * the second is compared with the exact boundary. An order placed earlier in the current second is
+     * then inside a range that ends now.
+     * @param time the range boundary
+     * @return the epoch seconds, rounded up
+     */
+    private static long toRangeBound(LocalDateTime time)
+    {
+        return toEpochSecond(time) + (time.getNano() > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,104 @@
+package com.restaurant.orderManagement.persistence;
+
+import java.io.*;
+
+/**
+ * Kinds of persisted file and the header each one starts with. The header is a magic
+ * number, the file kind and the format version, so a loader can tell which decoder a file
+ * needs, or that it is a legacy Java serialization file, from its first bytes alone.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public enum FileFormat
+{
+    ORDER_SNAPSHOT(1, 2),
+    ORDER_JOURNAL(2, 3),
+    HISTORY_SEGMENT(3, 1),
+    ARCHIVE_SEGMENT(4, 1),
+    ARCHIVE_INDEX(5, 1),
+    CONTACT_INDEX(6, 1),
+    ORDER_TIME_INDEX(7, 2);
+
+    public static final int HEADER_SIZE = 6;
+
+    private static final int MAGIC = 0x544B4F4D;
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+
+    private final int typeCode;
+    private final int currentVersion;
+
+    /**
+     * Constructor for FileFormat
+     * @param typeCode the code identifying the file kind in the header
+     * @param currentVersion the format version new files of this kind are written in
+     */
+    FileFormat(int typeCode, int currentVersion)
+    {
+        this.typeCode = typeCode;
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * Checks whether a file was written by Java serialization, as the original
+     * orders.dat and customers.dat files were
+     * @param file the file to check
+     * @return true if the file starts with the Java serialization stream magic
+     * @throws IOException if the file exists but could not be read
+     */
+    public static boolean isLegacySerialized(File file) throws IOException
+    {
+        if (!file.isFile() || file.length() < 2)
+        {
+            return false;
+        }
+
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file)))
+        {
+            return input.readUnsignedShort() == SERIALIZATION_MAGIC;
+        }
+    }
+
+    /**
+     * Reads and checks the header of a file of this kind
+     * @param input the input positioned at the start of the file
+     * @return the format version of the file
+     * @throws IOException if the header is missing, belongs to another kind of file or has an unsupported version
+     */
+    public int readHeader(DataInput input) throws IOException
+    {
+        int magic = input.readInt();
+        if ((magic >>> 16) == SERIALIZATION_MAGIC)
+        {
+            throw new IOException("Legacy serialized file, migration required");
+        }
+        if (magic != MAGIC)
+        {
+            throw new IOException("Unrecognised file format");
+        }
+
+        int fileType = input.readUnsignedByte();
+        if (fileType != typeCode)
+        {
+            throw new IOException("Expected " + this + " file but found type " + fileType);
+        }
+
+        int version = input.readUnsignedByte();
+        if (version < 1 || version > currentVersion)
+        {
+            throw new IOException("Unsupported " + this + " format version: " + version);
+        }
+        return version;
+    }
+
+    /**
+     * Writes the header for a new file of this kind at the current format version
+     * @param output the output positioned at the start of the file
+     * @throws IOException if the output could not be written
+     */
+    public void writeHeader(DataOutput output) throws IOException
+    {
+        output.writeInt(MAGIC);
+        output.writeByte(typeCode);
+        output.writeByte(currentVersion);
+    }
+}
@@ -0,0 +1,352 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cold tier of the customer history. Orders moved out of the live segments are written
+ * as Deflater-compressed blocks, one block per customer per archive run, and a small
+ * index records where each customer's blocks are so they can be read back on demand.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class HistoryArchive
+{
+    private static final String INDEX_FILE = "archive.idx";
+    private static final String SEGMENT_PREFIX = "archive-";
+    private static final String SEGMENT_EXTENSION = ".dat";
+
+    private final File directory;
+    private final Map<String, List<ArchiveEntry>> archiveIndex;
+    private long currentRun;
+
+    /**
+     * Location and summary of one compressed block of a customer's orders
+     */
+    private static class ArchiveEntry
+    {
+        private final long run;
+        private final long offset;
+        private final int orderCount;
+        private final long archivedThrough;
+
+        /**
+         * Constructor for ArchiveEntry
+         * @param run the archive run whose segment holds the block
+         * @param offset the position of the block in the segment
+         * @param orderCount the number of orders in the block
+         * @param archivedThrough the cutoff, in epoch seconds, every order older than which is archived
+         */
+        private ArchiveEntry(long run, long offset, int orderCount, long archivedThrough)
+        {
+            this.run = run;
+            this.offset = offset;
+            this.orderCount = orderCount;
+            this.archivedThrough = archivedThrough;
+        }
+    }
+
+    /**
+     * Constructor for HistoryArchive
+     * @param directory the directory holding the archive segments and index
+     */
+    public HistoryArchive(File directory)
+    {
+        this.directory = directory;
+        this.archiveIndex = new HashMap<String, List<ArchiveEntry>>();
+        this.currentRun = 0;
+    }
+
+    /**
+     * Compresses a customer's old orders into the current run's segment and records them in the index.
+     * The block is on disk before the index points at it.
+     * @param customerName the lowercase customer name
+     * @param orders the orders to archive, oldest first
+     * @param archivedThrough the cutoff, in epoch seconds, every order older than which is now archived
+     * @throws IOException if the block or index record could not be written
+     */
+    public synchronized void append(String customerName, List<Order> orders, long archivedThrough) throws IOException
+    {
+        ByteArrayOutputStream orderBytes = new ByteArrayOutputStream();
+        OrderCodec.writeOrders(new DataOutputStream(orderBytes), orders);
+
+        File segmentFile = getSegmentFile(currentRun);
+        boolean newSegment = segmentFile.length() == 0;
+        long offset = newSegment ? FileFormat.HEADER_SIZE : segmentFile.length();
+        try (FileOutputStream fileOutput = new FileOutputStream(segmentFile, true))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            if (newSegment)
+            {
+                FileFormat.ARCHIVE_SEGMENT.writeHeader(output);
+            }
+            ChecksummedRecords.writeRecord(output, compress(orderBytes.toByteArray()));
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+
+        ArchiveEntry entry = new ArchiveEntry(currentRun, offset, orders.size(), archivedThrough);
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexOutput = new DataOutputStream(indexBytes);
+        OrderCodec.writeString(indexOutput, customerName);
+        OrderCodec.writeVarLong(indexOutput, entry.run);
+        OrderCodec.writeVarLong(indexOutput, entry.offset);
+        OrderCodec.writeVarLong(indexOutput, entry.orderCount);
+        OrderCodec.writeVarLong(indexOutput, entry.archivedThrough);
+
+        File indexFile = new File(directory, INDEX_FILE);
+        boolean newIndex = indexFile.length() == 0;
+        try (FileOutputStream fileOutput = new FileOutputStream(indexFile, true))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            if (newIndex)
+            {
+                FileFormat.ARCHIVE_INDEX.writeHeader(output);
+            }
+            ChecksummedRecords.writeRecord(output, indexBytes.toByteArray());
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+
+        archiveIndex.computeIfAbsent(customerName, name -> new ArrayList<ArchiveEntry>()).add(entry);
+    }
+
+    /**
+     * Compresses a block of encoded orders
+     * @param bytes the encoded orders
+     * @return the compressed bytes
+     */
+    private static byte[] compress(byte[] bytes)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(bytes);
+        deflater.finish();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2 + 16);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished())
+        {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Checks whether a customer has archived orders
+     * @param customerName the lowercase customer name
+     * @return true if at least one block is archived for the customer
+     */
+    public synchronized boolean containsCustomer(String customerName)
+    {
+        return archiveIndex.containsKey(customerName);
+    }
+
+    /**
+     * Decompresses a block into the encoded orders
+     * @param compressed the compressed block
+     * @return the encoded orders
+     * @throws IOException if the block is not valid compressed data
+     */
+    private static byte[] decompress(ByteBuffer compressed) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.remaining() * 4);
+        inflater.setInput(compressed);
+
+        byte[] buffer = new byte[4096];
+        try
+        {
+            while (!inflater.finished())
+            {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new IOException("Archived block is truncated");
+                }
+                bytes.write(buffer, 0, length);
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Archived block is corrupt", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Gets the number of archived orders of a customer, without reading any blocks
+     * @param customerName the lowercase customer name
+     * @return the archived order count
+     */
+    public synchronized int getArchivedOrderCount(String customerName)
+    {
+        int orderCount = 0;
+        for (ArchiveEntry entry : archiveIndex.getOrDefault(customerName, Collections.<ArchiveEntry>emptyList()))
+        {
+            orderCount += entry.orderCount;
+        }
+        return orderCount;
+    }
+
+    /**
+     * Gets the cutoff every order older than which has been archived for a customer
+     * @param customerName the lowercase customer name
+     * @return the cutoff in epoch seconds, Long.MIN_VALUE if nothing is archived
+     */
+    public synchronized long getArchivedThrough(String customerName)
+    {
+        long archivedThrough = Long.MIN_VALUE;
+        for (ArchiveEntry entry : archiveIndex.getOrDefault(customerName, Collections.<ArchiveEntry>emptyList()))
+        {
+            archivedThrough = Math.max(archivedThrough, entry.archivedThrough);
+        }
+        return archivedThrough;
+    }
+
+    /**
+     * Gets the segment file of an archive run
+     * @param run the archive run
+     * @return the segment file
+     */
+    private File getSegmentFile(long run)
+    {
+        return new File(directory, SEGMENT_PREFIX + run + SEGMENT_EXTENSION);
+    }
+
+    /**
+     * Gets the names of every customer with archived orders
+     * @return the lowercase customer names
+     */
+    public synchronized List<String> getCustomerNames()
+    {
+        return new ArrayList<String>(archiveIndex.keySet());
+    }
+
+    /**
+     * Checks whether any customer has archived orders
+     * @return true if the index holds at least one block
+     */
+    public synchronized boolean hasCustomers()
+    {
+        return !archiveIndex.isEmpty();
+    }
+
+    /**
+     * Opens the archive by reading its index. Blocks are only read on demand.
+     * @throws IOException if the archive directory or index could not be read
+     */
+    public synchronized void open() throws IOException
+    {
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Could not create archive directory: " + directory);
+        }
+
+        File indexFile = new File(directory, INDEX_FILE);
+        ChecksummedRecords.Scan scan = ChecksummedRecords.scan(indexFile, FileFormat.ARCHIVE_INDEX);
+        if (scan.getDiscardedBytes() > 0)
+        {
+            ChecksummedRecords.truncate(indexFile, scan.getValidLength());
+        }
+
+        for (byte[] record : scan.getRecords())
+        {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+            String customerName = OrderCodec.readString(input);
+            ArchiveEntry entry = new ArchiveEntry(OrderCodec.readVarLong(input), OrderCodec.readVarLong(input),
+                    OrderCodec.readVarInt(input), OrderCodec.readVarLong(input));
+            archiveIndex.computeIfAbsent(customerName, name -> new ArrayList<ArchiveEntry>()).add(entry);
+            currentRun = Math.max(currentRun, entry.run + 1);
+        }
+    }
+
+    /**
+     * Reads and decompresses all archived orders of a customer. Each block is inflated straight
+     * out of a memory mapping of its segment, so only this customer's orders reach the heap.
+     * @param customerName the lowercase customer name
+     * @return the archived orders, oldest first, empty if there are none
+     * @throws IOException if a block could not be read
+     */
+    public List<Order> readOrders(String customerName) throws IOException
+    {
+        return readOrders(customerName, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a slice of a customer's archived orders. Blocks are appended oldest first and the index
+     * holds the order count of each, so blocks before the slice are skipped without being read and
+     * only the blocks that hold the slice are decompressed. Decoding stops at the end of the slice.
+     * @param customerName the lowercase customer name
+     * @param fromIndex the position of the first order to read among the customer's archived orders
+     * @param maxOrders the most orders to read
+     * @return the archived orders in the slice, oldest first, empty if there are none
+     * @throws IOException if a block could not be read
+     */
+    public synchronized List<Order> readOrders(String customerName, int fromIndex, int maxOrders) throws IOException
+    {
+        List<Order> orders = new ArrayList<Order>();
+        Map<Long, ByteBuffer> mappedSegments = new HashMap<Long, ByteBuffer>();
+        long blockStart = 0;
+        for (ArchiveEntry entry : archiveIndex.getOrDefault(customerName, Collections.<ArchiveEntry>emptyList()))
+        {
+            if (orders.size() >= maxOrders)
+            {
+                break;
+            }
+            long blockEnd = blockStart + entry.orderCount;
+            if (blockEnd <= fromIndex)
+            {
+                blockStart = blockEnd;
+                continue;
+            }
+
+            ByteBuffer segment = mappedSegments.get(entry.run);
+            if (segment == null)
+            {
+                segment = ChecksummedRecords.map(getSegmentFile(entry.run));
+                mappedSegments.put(entry.run, segment);
+            }
+            if (entry.offset >= segment.limit())
+            {
+                throw new IOException("Archived block is missing from " + getSegmentFile(entry.run));
+            }
+
+            segment.position((int) entry.offset);
+            byte[] orderBytes = decompress(ChecksummedRecords.readRecord(segment));
+            ByteBufferInput input = new ByteBufferInput(ByteBuffer.wrap(orderBytes));
+            int orderCount = OrderCodec.readVarInt(input);
+            for (long position = blockStart; position < blockStart + orderCount && orders.size() < maxOrders; position++)
+            {
+                Order order = OrderCodec.readOrder(input);
+                if (position >= fromIndex)
+                {
+                    orders.add(order);
+                }
+            }
+            blockStart = blockEnd;
+        }
+        return orders;
+    }
+
+    /**
+     * Starts a new archive run, so its blocks go to a fresh segment file
+     */
+    public synchronized void startRun()
+    {
+        while (getSegmentFile(currentRun).exists())
+        {
+            currentRun++;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.restaurant.orderManagement.persistence;
+
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically moves customer orders older than a maximum age into the compressed
+ * history archive on a background thread, keeping the live segments and cache small
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class HistoryArchiver
+{
+    private static final long FIRST_RUN_DELAY_MINUTES = 10;
+
+    private final CustomerHistoryStore customerHistoryStore;
+    private final long maxAgeDays;
+    private final long intervalHours;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructor for HistoryArchiver
+     * @param customerHistoryStore the history whose old orders are archived
+     * @param maxAgeDays the age in days after which an order is archived
+     * @param intervalHours the time between archive runs
+     */
+    public HistoryArchiver(CustomerHistoryStore customerHistoryStore, long maxAgeDays, long intervalHours)
+    {
+        if (maxAgeDays < 0)
+        {
+            throw new IllegalArgumentException("Archive age cannot be negative");
+        }
+        this.customerHistoryStore = customerHistoryStore;
+        this.maxAgeDays = maxAgeDays;
+        this.intervalHours = intervalHours;
+        this.executor = null;
+    }
+
+    /**
+     * Archives every order older than the maximum age
+     * @return the number of orders archived
+     * @throws IOException if the archive or a segment could not be written
+     */
+    public int archive() throws IOException
+    {
+        return customerHistoryStore.archiveOlderThan(LocalDateTime.now().minusDays(maxAgeDays));
+    }
+
+    /**
+     * Runs an archive pass on the background thread, reporting failures instead of throwing
+     */
+    private void runScheduledArchive()
+    {
+        try
+        {
+            archive();
+        }
+        catch (ClosedByInterruptException e)
+        {
+            // Stopped by shutdown before anything was written for the current customer
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not archive customer history.");
+        }
+    }
+
+    /**
+     * Stops background archiving. A run in progress is interrupted and stops at the next
+     * customer; a customer already being written is finished first.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+            try
+            {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * Starts archiving in the background, first some minutes after startup so the first run does not
+     * compete with recovery and the first orders for the history, then at the configured interval
+     */
+    public void start()
+    {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "history-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runScheduledArchive, TimeUnit.MINUTES.toSeconds(FIRST_RUN_DELAY_MINUTES),
+                TimeUnit.HOURS.toSeconds(intervalHours), TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,24 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+/**
+ * Callback interface receiving the mutations recorded in an order journal during replay
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public interface JournalReplayListener
+{
+    /**
+     * Called for every order that was added to the queue
+     * @param order the order that was added, with an id of 0 if the record predates order ids
+     */
+    void onOrderAdded(Order order);
+
+    /**
+     * Called for every order that was delivered from the queue
+     * @param orderId the id of the delivered order, or 0 for records written before orders
+     *                had ids, which always delivered the head of the queue
+     */
+    void onOrderDelivered(long orderId);
+}
@@ -0,0 +1,314 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind stage for the order journal and customer history. Mutations are queued and
+ * written by a dedicated thread, which gathers a burst of records for up to a maximum delay
+ * and flushes them to disk in one go, so callers never wait on the file system.
+ * Once the writer thread has stopped, flushing returns at once instead of waiting on a thread that
+ * is gone, and writes queued after that are not written.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class JournalWriter
+{
+    private final OrderJournal orderJournal;
+    private final CustomerHistoryStore customerHistoryStore;
+    private final long maxDelayMillis;
+    private final BlockingQueue<WriteTask> taskQueue;
+    private final AtomicInteger pendingRecordCount;
+    private long scheduledGeneration;
+    private volatile Thread writerThread;
+    private volatile boolean writerStopped;
+
+    /**
+     * A single queued write, applied to the journal on the writer thread
+     */
+    private interface WriteTask
+    {
+        /**
+         * Applies the write to the journal
+         * @param journal the journal to write to
+         * @throws IOException if the journal could not be written
+         */
+        void apply(OrderJournal journal) throws IOException;
+    }
+
+    /**
+     * Task that writes nothing and signals once everything queued before it is flushed
+     */
+    private static class FlushBarrier implements WriteTask
+    {
+        private final CountDownLatch flushed;
+        private final boolean stop;
+
+        /**
+         * Constructor for FlushBarrier
+         * @param stop whether the writer thread should exit after this barrier
+         */
+        private FlushBarrier(boolean stop)
+        {
+            this.flushed = new CountDownLatch(1);
+            this.stop = stop;
+        }
+
+        @Override
+        public void apply(OrderJournal journal)
+        {
+            // Only marks a position in the queue
+        }
+    }
+
+    /**
+     * Constructor for JournalWriter
+     * @param orderJournal the journal records are written to, already replayed
+     * @param customerHistoryStore the history whose appended orders are written with each batch
+     * @param maxDelayMillis the longest time a record waits for others to share its flush
+     */
+    public JournalWriter(OrderJournal orderJournal, CustomerHistoryStore customerHistoryStore, long maxDelayMillis)
+    {
+        this.orderJournal = orderJournal;
+        this.customerHistoryStore = customerHistoryStore;
+        this.maxDelayMillis = maxDelayMillis;
+        this.taskQueue = new LinkedBlockingQueue<WriteTask>();
+        this.pendingRecordCount = new AtomicInteger(orderJournal.getPendingRecordCount());
+        this.scheduledGeneration = orderJournal.getCurrentGeneration();
+        this.writerThread = null;
+        this.writerStopped = false;
+    }
+
+    /**
+     * Waits for every queued write to be flushed and stops the writer thread
+     */
+    public void close()
+    {
+        if (writerThread != null)
+        {
+            awaitBarrier(new FlushBarrier(true));
+            writerThread = null;
+        }
+    }
+
+    /**
+     * Queues a barrier and waits until the writer thread has passed it. The stopped flag is checked
+     * after queueing: a writer that stops later releases every barrier still queued, and one that has
+     * already stopped will never reach the barrier, so it is not waited for.
+     * @param barrier the barrier to queue
+     */
+    private void awaitBarrier(FlushBarrier barrier)
+    {
+        taskQueue.add(barrier);
+        if (writerStopped)
+        {
+            return;
+        }
+        try
+        {
+            barrier.flushed.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a record for an order added to the queue. Safe to call from any number of threads.
+     * @param order the order that was added, with its id assigned
+     */
+    public void enqueueAdd(Order order)
+    {
+        pendingRecordCount.incrementAndGet();
+        taskQueue.add(journal -> journal.appendAdd(order));
+    }
+
+    /**
+     * Queues the records for a batch of orders added together as a single write, so the whole
+     * batch goes to disk in one flush. Safe to call from any number of threads.
+     * @param orders the orders that were added, with their ids assigned
+     */
+    public void enqueueAddBatch(List<Order> orders)
+    {
+        pendingRecordCount.addAndGet(orders.size());
+        taskQueue.add(journal ->
+        {
+            for (Order order : orders)
+            {
+                journal.appendAdd(order);
+            }
+        });
+    }
+
+    /**
+     * Queues a record for an order delivered from the queue. Safe to call from any number of threads.
+     * @param orderId the id of the delivered order
+     */
+    public void enqueueDeliver(long orderId)
+    {
+        pendingRecordCount.incrementAndGet();
+        taskQueue.add(journal -> journal.appendDeliver(orderId));
+    }
+
+    /**
+     * Queues a single record for a batch of orders delivered together. Safe to call from any number of threads.
+     * @param orderIds the ids of the delivered orders
+     */
+    public void enqueueDeliverBatch(long[] orderIds)
+    {
+        pendingRecordCount.incrementAndGet();
+        taskQueue.add(journal -> journal.appendDeliverBatch(orderIds));
+    }
+
+    /**
+     * Queues a rotation to a new journal segment. Records queued before this call go to the
+     * old segment and records queued after it to the new one. The caller must stop other
+     * threads from queueing records while it rotates.
+     * @return the generation of the new segment
+     */
+    public synchronized long enqueueRotation()
+    {
+        scheduledGeneration++;
+        pendingRecordCount.set(0);
+        taskQueue.add(OrderJournal::rotate);
+        return scheduledGeneration;
+    }
+
+    /**
+     * Blocks until every write queued so far is on disk, or returns at once if the writer thread has
+     * already stopped
+     */
+    public void flush()
+    {
+        if (writerThread != null)
+        {
+            awaitBarrier(new FlushBarrier(false));
+        }
+    }
+
+    /**
+     * Gets the number of records queued or replayed since the last rotation
+     * @return the record count
+     */
+    public int getPendingRecordCount()
+    {
+        return pendingRecordCount.get();
+    }
+
+    /**
+     * Writer thread loop: takes the first task of a burst, gathers more until a barrier arrives or
+     * the maximum delay passes, then writes and flushes them together. Waiting out the delay even
+     * when the queue goes quiet lets records that arrive a moment apart share one flush; a barrier
+     * cuts the wait short for callers that need their writes on disk.
+     * After a stop barrier or an interrupt the thread marks itself stopped and releases any barrier
+     * queued behind it, so no flush waits forever.
+     */
+    private void runWriter()
+    {
+        List<WriteTask> batch = new ArrayList<WriteTask>();
+        boolean running = true;
+
+        while (running)
+        {
+            try
+            {
+                WriteTask task = taskQueue.take();
+                batch.add(task);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+
+                while (!(task instanceof FlushBarrier))
+                {
+                    long remaining = deadline - System.nanoTime();
+                    task = remaining > 0 ? taskQueue.poll(remaining, TimeUnit.NANOSECONDS) : taskQueue.poll();
+                    if (task == null)
+                    {
+                        break;
+                    }
+                    batch.add(task);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                running = false;
+            }
+
+            writeBatch(batch);
+
+            for (WriteTask task : batch)
+            {
+                if (task instanceof FlushBarrier)
+                {
+                    ((FlushBarrier) task).flushed.countDown();
+                    running = running && !((FlushBarrier) task).stop;
+                }
+            }
+            batch.clear();
+        }
+
+        writerStopped = true;
+        WriteTask task;
+        while ((task = taskQueue.poll()) != null)
+        {
+            if (task instanceof FlushBarrier)
+            {
+                ((FlushBarrier) task).flushed.countDown();
+            }
+        }
+    }
+
+    /**
+     * Starts the writer thread. Queued writes are also flushed if the JVM shuts down
+     * without close being called.
+     */
+    public void start()
+    {
+        writerThread = new Thread(this::runWriter, "order-journal-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "order-journal-shutdown"));
+    }
+
+    /**
+     * Applies a batch of tasks to the journal and flushes it and the customer history once
+     * @param batch the tasks in the order they were queued
+     */
+    private void writeBatch(List<WriteTask> batch)
+    {
+        boolean failed = false;
+        for (WriteTask task : batch)
+        {
+            try
+            {
+                task.apply(orderJournal);
+            }
+            catch (IOException e)
+            {
+                failed = true;
+            }
+        }
+
+        try
+        {
+            orderJournal.flush();
+            customerHistoryStore.flush();
+        }
+        catch (IOException e)
+        {
+            failed = true;
+        }
+
+        if (failed)
+        {
+            System.out.println("Warning: Could not write order journal.");
+        }
+    }
+}
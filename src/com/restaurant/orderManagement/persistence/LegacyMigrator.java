@@ -0,0 +1,243 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Converts the orders.dat and customers.dat files written by Java serialization in earlier
+ * versions into the current versioned formats. Customer history is written into a scratch
+ * directory in batches, releasing each customer's legacy orders once written, and moved into
+ * place only when complete, so an interrupted migration can simply be run again.
+ * The legacy files are kept with a .legacy extension.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class LegacyMigrator
+{
+    private static final String LEGACY_EXTENSION = ".legacy";
+    private static final String MIGRATING_EXTENSION = ".migrating";
+    private static final int FLUSH_INTERVAL = 1000;
+    private static final long HEAP_BYTES_PER_FILE_BYTE = 5;
+    private static final String ALLOWED_CLASSES = "maxdepth=16;maxrefs=100000000;"
+            + "com.restaurant.orderManagement.model.entity.Order;"
+            + "com.restaurant.orderManagement.model.entity.Food;"
+            + "com.restaurant.orderManagement.model.entity.Pizza;"
+            + "com.restaurant.orderManagement.model.entity.Pasta;"
+            + "com.restaurant.orderManagement.model.enums.MealType;"
+            + "com.restaurant.orderManagement.model.enums.PizzaTopping;"
+            + "com.restaurant.orderManagement.model.enums.PastaTopping;"
+            + "java.util.ArrayList;java.util.LinkedList;java.util.HashMap;java.util.Map$Entry;"
+            + "java.time.Ser;java.time.LocalDateTime;java.time.LocalDate;java.time.LocalTime;"
+            + "java.lang.Enum;java.lang.Object;!*";
+
+    private final File ordersFile;
+    private final File customersFile;
+    private final File historyDirectory;
+
+    /**
+     * Constructor for LegacyMigrator
+     * @param ordersFileName the order queue file, legacy or current
+     * @param customersFileName the legacy customer history file
+     * @param historyDirectoryName the directory the customer history segments belong in
+     */
+    public LegacyMigrator(String ordersFileName, String customersFileName, String historyDirectoryName)
+    {
+        this.ordersFile = new File(ordersFileName);
+        this.customersFile = new File(customersFileName);
+        this.historyDirectory = new File(historyDirectoryName);
+    }
+
+    /**
+     * Deletes a directory and everything in it
+     * @param directory the directory to delete
+     * @throws IOException if something could not be deleted
+     */
+    private static void deleteRecursively(File directory) throws IOException
+    {
+        if (!directory.exists())
+        {
+            return;
+        }
+
+        List<Path> paths = new ArrayList<Path>();
+        try (Stream<Path> walk = Files.walk(directory.toPath()))
+        {
+            walk.forEach(paths::add);
+        }
+        Collections.reverse(paths);
+        for (Path path : paths)
+        {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Gets the name a legacy file is kept under once migrated
+     * @param file the legacy data file
+     * @return the backup file
+     */
+    private static File getLegacyFile(File file)
+    {
+        return new File(file.getPath() + LEGACY_EXTENSION);
+    }
+
+    /**
+     * Checks whether either data file still uses the legacy format
+     * @return true if a migration is needed before the data files can be loaded
+     * @throws IOException if a data file could not be read
+     */
+    public boolean isMigrationNeeded() throws IOException
+    {
+        return isOrderQueueLegacy() || FileFormat.isLegacySerialized(customersFile);
+    }
+
+    /**
+     * Checks whether the order queue still has to be migrated. This is also the case when a
+     * previous migration moved the legacy file aside but was interrupted before the snapshot was written.
+     * @return true if the order queue is only available in the legacy format
+     * @throws IOException if a data file could not be read
+     */
+    private boolean isOrderQueueLegacy() throws IOException
+    {
+        return FileFormat.isLegacySerialized(ordersFile)
+                || (!ordersFile.exists() && FileFormat.isLegacySerialized(getLegacyFile(ordersFile)));
+    }
+
+    /**
+     * Migrates every legacy data file and reports the throughput
+     * @return the number of orders migrated
+     * @throws IOException if a legacy file could not be read or its replacement written
+     */
+    public int migrate() throws IOException
+    {
+        long start = System.nanoTime();
+        long bytesRead = 0;
+        int migratedCount = 0;
+
+        if (FileFormat.isLegacySerialized(customersFile))
+        {
+            bytesRead += customersFile.length();
+            migratedCount += migrateHistory();
+        }
+        if (isOrderQueueLegacy())
+        {
+            bytesRead += Math.max(ordersFile.length(), getLegacyFile(ordersFile).length());
+            migratedCount += migrateOrderQueue();
+        }
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1_000_000_000.0;
+        System.out.println(String.format("Migrated %d orders (%.1f KB) in %.0f ms: %.0f orders/s, %.2f MB/s.",
+                migratedCount, bytesRead / 1024.0, seconds * 1000, migratedCount / seconds,
+                bytesRead / seconds / (1024 * 1024)));
+        return migratedCount;
+    }
+
+    /**
+     * Migrates the legacy customer history into segment files
+     * @return the number of orders migrated
+     * @throws IOException if the history could not be read or written
+     */
+    private int migrateHistory() throws IOException
+    {
+        CustomerHistoryStore existingHistory = new CustomerHistoryStore(historyDirectory.getPath());
+        existingHistory.open();
+        int migratedCount = 0;
+
+        // A complete migrated history is only moved into place just before the legacy file is renamed
+        if (existingHistory.isEmpty())
+        {
+            File migratingDirectory = new File(historyDirectory.getPath() + MIGRATING_EXTENSION);
+            deleteRecursively(migratingDirectory);
+            CustomerHistoryStore migratedHistory = new CustomerHistoryStore(migratingDirectory.getPath());
+            migratedHistory.open();
+
+            Map<?, ?> legacyHistory = readLegacyObject(customersFile, Map.class);
+            Iterator<? extends Map.Entry<?, ?>> iterator = legacyHistory.entrySet().iterator();
+            while (iterator.hasNext())
+            {
+                for (Object order : (List<?>) iterator.next().getValue())
+                {
+                    migratedHistory.append((Order) order);
+                    if (++migratedCount % FLUSH_INTERVAL == 0)
+                    {
+                        migratedHistory.flush();
+                    }
+                }
+                iterator.remove();
+            }
+            migratedHistory.flush();
+
+            deleteRecursively(historyDirectory);
+            Files.move(migratingDirectory.toPath(), historyDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        Files.move(customersFile.toPath(), getLegacyFile(customersFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return migratedCount;
+    }
+
+    /**
+     * Migrates the legacy order queue into a snapshot. The legacy file is moved aside first,
+     * since a snapshot is never written over a legacy file.
+     * @return the number of orders migrated
+     * @throws IOException if the queue could not be read or written
+     */
+    private int migrateOrderQueue() throws IOException
+    {
+        File legacyFile = getLegacyFile(ordersFile);
+        if (FileFormat.isLegacySerialized(ordersFile))
+        {
+            Files.move(ordersFile.toPath(), legacyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        List<Order> orders = new ArrayList<Order>();
+        for (Object order : readLegacyObject(legacyFile, Collection.class))
+        {
+            orders.add((Order) order);
+        }
+        new SnapshotStore(ordersFile.getPath()).writeOrders(0, orders);
+        return orders.size();
+    }
+
+    /**
+     * Reads the object stored in a legacy file, accepting only the model classes and the collections the
+     * legacy files were written with. The whole object graph is read into memory at once, so a file that
+     * would not fit in the free heap is refused before anything is read.
+     * @param file the legacy file
+     * @param expectedType the type the stored object must have
+     * @param <T> the expected type
+     * @return the stored object
+     * @throws IOException if the file is too large for the free heap, could not be read or holds unexpected content
+     */
+    private static <T> T readLegacyObject(File file, Class<T> expectedType) throws IOException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeapBytes = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        if (file.length() > freeHeapBytes / HEAP_BYTES_PER_FILE_BYTE)
+        {
+            throw new IOException(String.format("Legacy file %s (%.1f MB) is too large to read in the %.0f MB of free"
+                    + " memory. Run the migrate command on its own with a larger -Xmx first.", file,
+                    file.length() / (1024.0 * 1024), freeHeapBytes / (1024.0 * 1024)));
+        }
+
+        Object stored;
+        try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            input.setObjectInputFilter(ObjectInputFilter.Config.createFilter(ALLOWED_CLASSES));
+            stored = input.readObject();
+        }
+        catch (ClassNotFoundException | InvalidClassException e)
+        {
+            throw new IOException("Unexpected class in legacy file: " + file, e);
+        }
+
+        if (!expectedType.isInstance(stored))
+        {
+            throw new IOException("Unexpected content in legacy file: " + file);
+        }
+        return expectedType.cast(stored);
+    }
+}
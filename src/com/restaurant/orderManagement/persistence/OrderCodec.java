@@ -0,0 +1,330 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.*;
+import com.restaurant.orderManagement.model.enums.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Compact binary encoding of orders and food items used for all persisted files.
+ * Enums are written as ordinals, lengths and counts as variable-length integers,
+ * order times as epoch seconds and strings as UTF-8 bytes.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public final class OrderCodec
+{
+    private static final int PIZZA_TAG = 0;
+    private static final int PASTA_TAG = 1;
+    private static final int MAX_STRING_BYTES = 1 << 16;
+
+    /**
+     * Private constructor, the codec only has static methods
+     */
+    private OrderCodec()
+    {
+    }
+
+    /**
+     * Decodes a single order from a byte array produced by encode
+     * @param bytes the encoded order
+     * @return the decoded order
+     * @throws IOException if the bytes are not a valid encoded order
+     */
+    public static Order decode(byte[] bytes) throws IOException
+    {
+        return readOrder(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Encodes a single order into a byte array
+     * @param order the order to encode
+     * @return the encoded order
+     */
+    public static byte[] encode(Order order)
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try
+        {
+            writeOrder(new DataOutputStream(bytes), order);
+        }
+        catch (IOException e)
+        {
+            // Writing to memory cannot fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a food item
+     * @param input the input to read from
+     * @return the decoded pizza or pasta
+     * @throws IOException if the data is not a valid food item
+     */
+    private static Food readFood(DataInput input) throws IOException
+    {
+        int tag = readVarInt(input);
+        Food food;
+
+        if (tag == PIZZA_TAG)
+        {
+            int toppingCount = readVarInt(input);
+            PizzaTopping[] toppings = PizzaTopping.values();
+            List<PizzaTopping> selectedToppings = new ArrayList<PizzaTopping>();
+            for (int i = 0; i < toppingCount; i++)
+            {
+                selectedToppings.add(toppings[readOrdinal(input, toppings.length)]);
+            }
+            food = new Pizza(selectedToppings);
+        }
+        else if (tag == PASTA_TAG)
+        {
+            // Ordinal 0 is plain pasta, toppings are shifted up by one
+            PastaTopping[] toppings = PastaTopping.values();
+            int topping = readOrdinal(input, toppings.length + 1);
+            food = topping == 0 ? new Pasta() : new Pasta(toppings[topping - 1]);
+        }
+        else
+        {
+            throw new IOException("Unknown food tag: " + tag);
+        }
+
+        food.setPrice(readVarLong(input) / 100.0);
+        return food;
+    }
+
+    /**
+     * Reads an order
+     * @param input the input to read from
+     * @return the decoded order
+     * @throws IOException if the data is not a valid order
+     */
+    public static Order readOrder(DataInput input) throws IOException
+    {
+        Order order = new Order(readString(input), readString(input), readString(input));
+        order.setOrderTime(LocalDateTime.ofEpochSecond(readZigZagLong(input), 0, ZoneOffset.UTC));
+
+        int itemCount = readVarInt(input);
+        List<Food> foodItems = new ArrayList<Food>();
+        for (int i = 0; i < itemCount; i++)
+        {
+            foodItems.add(readFood(input));
+        }
+        order.setFoodItems(foodItems);
+        return order;
+    }
+
+    /**
+     * Reads a count-prefixed list of orders
+     * @param input the input to read from
+     * @return the decoded orders in the order they were written
+     * @throws IOException if the data is not a valid order list
+     */
+    public static List<Order> readOrders(DataInput input) throws IOException
+    {
+        int orderCount = readVarInt(input);
+        List<Order> orders = new ArrayList<Order>();
+        for (int i = 0; i < orderCount; i++)
+        {
+            orders.add(readOrder(input));
+        }
+        return orders;
+    }
+
+    /**
+     * Reads an enum ordinal and checks it is in range
+     * @param input the input to read from
+     * @param limit the number of valid ordinals
+     * @return the ordinal
+     * @throws IOException if the ordinal is out of range
+     */
+    private static int readOrdinal(DataInput input, int limit) throws IOException
+    {
+        int ordinal = readVarInt(input);
+        if (ordinal >= limit)
+        {
+            throw new IOException("Invalid ordinal: " + ordinal);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string
+     * @param input the input to read from
+     * @return the decoded string
+     * @throws IOException if the length is invalid or the data ends early
+     */
+    public static String readString(DataInput input) throws IOException
+    {
+        int length = readVarInt(input);
+        if (length > MAX_STRING_BYTES)
+        {
+            throw new IOException("String length out of range: " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a non-negative variable-length int
+     * @param input the input to read from
+     * @return the decoded value
+     * @throws IOException if the value does not fit in an int
+     */
+    public static int readVarInt(DataInput input) throws IOException
+    {
+        long value = readVarLong(input);
+        if (value > Integer.MAX_VALUE)
+        {
+            throw new IOException("Variable-length int out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a non-negative variable-length long, seven bits per byte
+     * @param input the input to read from
+     * @return the decoded value
+     * @throws IOException if the encoding is longer than a long allows
+     */
+    public static long readVarLong(DataInput input) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int nextByte = input.readUnsignedByte();
+            value |= (long) (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0)
+            {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * Reads a signed variable-length long written with zig-zag encoding
+     * @param input the input to read from
+     * @return the decoded value
+     * @throws IOException if the encoding is malformed
+     */
+    private static long readZigZagLong(DataInput input) throws IOException
+    {
+        long value = readVarLong(input);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a food item
+     * @param output the output to write to
+     * @param food the pizza or pasta to write
+     * @throws IOException if the output could not be written
+     */
+    private static void writeFood(DataOutput output, Food food) throws IOException
+    {
+        if (food instanceof Pizza)
+        {
+            List<PizzaTopping> toppings = ((Pizza) food).getToppings();
+            writeVarLong(output, PIZZA_TAG);
+            writeVarLong(output, toppings.size());
+            for (PizzaTopping topping : toppings)
+            {
+                writeVarLong(output, topping.ordinal());
+            }
+        }
+        else if (food instanceof Pasta)
+        {
+            PastaTopping topping = ((Pasta) food).getTopping();
+            writeVarLong(output, PASTA_TAG);
+            writeVarLong(output, topping == null ? 0 : topping.ordinal() + 1);
+        }
+        else
+        {
+            throw new IOException("Unsupported food type: " + food.getClass().getSimpleName());
+        }
+
+        writeVarLong(output, Math.round(food.getPrice() * 100));
+    }
+
+    /**
+     * Writes an order. The total cost and meal type are derived from the food items and not stored.
+     * @param output the output to write to
+     * @param order the order to write
+     * @throws IOException if the output could not be written
+     */
+    public static void writeOrder(DataOutput output, Order order) throws IOException
+    {
+        writeString(output, order.getCustomerName());
+        writeString(output, order.getContactNumber());
+        writeString(output, order.getDeliveryAddress());
+        writeZigZagLong(output, order.getOrderTime().toEpochSecond(ZoneOffset.UTC));
+
+        List<Food> foodItems = order.getFoodItems();
+        writeVarLong(output, foodItems.size());
+        for (Food food : foodItems)
+        {
+            writeFood(output, food);
+        }
+    }
+
+    /**
+     * Writes a count-prefixed list of orders
+     * @param output the output to write to
+     * @param orders the orders to write
+     * @throws IOException if the output could not be written
+     */
+    public static void writeOrders(DataOutput output, Collection<Order> orders) throws IOException
+    {
+        writeVarLong(output, orders.size());
+        for (Order order : orders)
+        {
+            writeOrder(output, order);
+        }
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string
+     * @param output the output to write to
+     * @param value the string to write
+     * @throws IOException if the output could not be written
+     */
+    public static void writeString(DataOutput output, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Writes a non-negative long using seven bits per byte
+     * @param output the output to write to
+     * @param value the value to write
+     * @throws IOException if the output could not be written
+     */
+    public static void writeVarLong(DataOutput output, long value) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    /**
+     * Writes a signed long with zig-zag encoding so small negative values stay short
+     * @param output the output to write to
+     * @param value the value to write
+     * @throws IOException if the output could not be written
+     */
+    private static void writeZigZagLong(DataOutput output, long value) throws IOException
+    {
+        writeVarLong(output, (value << 1) ^ (value >> 63));
+    }
+}
@@ -0,0 +1,330 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Append-only journal of order mutations, so each add or delivery costs one small write
+ * instead of rewriting the whole queue. The journal is split into numbered segments;
+ * a checkpoint rotates to a new segment and deletes the ones its snapshot covers.
+ * Records are checksummed, so a record torn by a crash is detected and cut off on replay.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderJournal
+{
+    private static final byte ADD_RECORD = 1;
+    private static final byte DELIVER_RECORD = 2;
+    private static final byte DELIVER_BATCH_RECORD = 3;
+    private static final int ORDER_ID_VERSION = 2;
+
+    private final File directory;
+    private final String baseName;
+    private long currentGeneration;
+    private int pendingRecordCount;
+    private long discardedBytes;
+    private FileOutputStream fileOutputStream;
+    private DataOutputStream outputStream;
+
+    /**
+     * Constructor for OrderJournal
+     * @param fileName the base name of the journal segment files
+     */
+    public OrderJournal(String fileName)
+    {
+        File baseFile = new File(fileName).getAbsoluteFile();
+        this.directory = baseFile.getParentFile();
+        this.baseName = baseFile.getName();
+        this.currentGeneration = 0;
+        this.pendingRecordCount = 0;
+        this.discardedBytes = 0;
+        this.fileOutputStream = null;
+        this.outputStream = null;
+    }
+
+    /**
+     * Appends a record for an order added to the queue. The record is buffered until flush is called.
+     * @param order the order that was added, with its id assigned
+     * @throws IOException if the record could not be written
+     */
+    public synchronized void appendAdd(Order order) throws IOException
+    {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        DataOutputStream payloadOutput = new DataOutputStream(payload);
+        payloadOutput.writeByte(ADD_RECORD);
+        OrderCodec.writeVarLong(payloadOutput, order.getOrderId());
+        OrderCodec.writeOrder(payloadOutput, order);
+
+        ChecksummedRecords.writeRecord(getOutputStream(), payload.toByteArray());
+        pendingRecordCount++;
+    }
+
+    /**
+     * Appends a record for an order delivered from the queue. The record is buffered until flush is called.
+     * @param orderId the id of the delivered order
+     * @throws IOException if the record could not be written
+     */
+    public synchronized void appendDeliver(long orderId) throws IOException
+    {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(10);
+        DataOutputStream payloadOutput = new DataOutputStream(payload);
+        payloadOutput.writeByte(DELIVER_RECORD);
+        OrderCodec.writeVarLong(payloadOutput, orderId);
+
+        ChecksummedRecords.writeRecord(getOutputStream(), payload.toByteArray());
+        pendingRecordCount++;
+    }
+
+    /**
+     * Appends one record for a batch of orders delivered together. The record is buffered until flush is called.
+     * @param orderIds the ids of the delivered orders
+     * @throws IOException if the record could not be written
+     */
+    public synchronized void appendDeliverBatch(long[] orderIds) throws IOException
+    {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(2 + orderIds.length * 4);
+        DataOutputStream payloadOutput = new DataOutputStream(payload);
+        payloadOutput.writeByte(DELIVER_BATCH_RECORD);
+        OrderCodec.writeVarLong(payloadOutput, orderIds.length);
+        for (long orderId : orderIds)
+        {
+            OrderCodec.writeVarLong(payloadOutput, orderId);
+        }
+
+        ChecksummedRecords.writeRecord(getOutputStream(), payload.toByteArray());
+        pendingRecordCount++;
+    }
+
+    /**
+     * Closes the current segment file if it is open
+     */
+    public synchronized void close()
+    {
+        if (outputStream != null)
+        {
+            try
+            {
+                outputStream.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing left to flush, the records are already on disk
+            }
+            outputStream = null;
+            fileOutputStream = null;
+        }
+    }
+
+    /**
+     * Deletes every segment older than the given generation
+     * @param generation the first generation to keep
+     */
+    public synchronized void deleteSegmentsBefore(long generation)
+    {
+        for (long segmentGeneration : listGenerations())
+        {
+            if (segmentGeneration < generation)
+            {
+                getSegmentFile(segmentGeneration).delete();
+            }
+        }
+    }
+
+    /**
+     * Writes all buffered records to the current segment file and forces them to disk
+     * @throws IOException if the records could not be written
+     */
+    public synchronized void flush() throws IOException
+    {
+        if (outputStream != null)
+        {
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+        }
+    }
+
+    /**
+     * Gets the generation new records are appended to
+     * @return the current generation
+     */
+    public synchronized long getCurrentGeneration()
+    {
+        return currentGeneration;
+    }
+
+    /**
+     * Gets the number of bytes of torn or corrupt records cut off during replay
+     * @return the discarded byte count
+     */
+    public synchronized long getDiscardedBytes()
+    {
+        return discardedBytes;
+    }
+
+    /**
+     * Gets the number of records, replayed or appended, not yet covered by a snapshot
+     * @return the record count
+     */
+    public synchronized int getPendingRecordCount()
+    {
+        return pendingRecordCount;
+    }
+
+    /**
+     * Opens the current segment in append mode on first use
+     * @return the stream records are written to
+     * @throws IOException if the segment file could not be opened
+     */
+    private DataOutputStream getOutputStream() throws IOException
+    {
+        if (outputStream == null)
+        {
+            File segmentFile = getSegmentFile(currentGeneration);
+            boolean newSegment = segmentFile.length() == 0;
+            fileOutputStream = new FileOutputStream(segmentFile, true);
+            outputStream = new DataOutputStream(new BufferedOutputStream(fileOutputStream));
+            if (newSegment)
+            {
+                FileFormat.ORDER_JOURNAL.writeHeader(outputStream);
+            }
+        }
+        return outputStream;
+    }
+
+    /**
+     * Gets the file holding the given segment
+     * @param generation the segment generation
+     * @return the segment file
+     */
+    private File getSegmentFile(long generation)
+    {
+        return new File(directory, baseName + "." + generation);
+    }
+
+    /**
+     * Lists the generations of all segment files on disk in ascending order
+     * @return the sorted generations
+     */
+    private List<Long> listGenerations()
+    {
+        List<Long> generations = new ArrayList<Long>();
+        String prefix = baseName + ".";
+        String[] fileNames = directory.list();
+
+        if (fileNames != null)
+        {
+            for (String fileName : fileNames)
+            {
+                if (fileName.startsWith(prefix) && fileName.length() > prefix.length())
+                {
+                    try
+                    {
+                        generations.add(Long.parseLong(fileName.substring(prefix.length())));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        // Not a journal segment
+                    }
+                }
+            }
+        }
+
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Replays every complete record in the segments from the given generation onwards, oldest first.
+     * New records are appended to a fresh segment after the newest one found, so replayed segments
+     * are never written to again. A segment is read up to its first torn or corrupt record and cut
+     * back to that point, so recovery only ever loses the record being written during a crash.
+     * @param fromGeneration the oldest generation to replay
+     * @param listener the listener receiving the replayed mutations
+     * @return the number of records replayed
+     * @throws IOException if a segment exists but could not be read
+     */
+    public synchronized int replay(long fromGeneration, JournalReplayListener listener) throws IOException
+    {
+        int recordCount = 0;
+        close();
+        currentGeneration = fromGeneration;
+        for (long generation : listGenerations())
+        {
+            if (generation >= fromGeneration)
+            {
+                recordCount += replaySegment(generation, listener);
+            }
+            currentGeneration = Math.max(currentGeneration, generation + 1);
+        }
+        pendingRecordCount += recordCount;
+        return recordCount;
+    }
+
+    /**
+     * Replays a single segment. Segments written before orders had ids carry no id in their
+     * records, and their deliveries always took the head of the queue; those are replayed
+     * with an order id of 0. A batch delivery record is replayed as one delivery per order.
+     * Delivery batches only appear in segments of format version 3 and later.
+     * @param generation the segment generation
+     * @param listener the listener receiving the replayed mutations
+     * @return the number of records replayed
+     * @throws IOException if the segment could not be read
+     */
+    private int replaySegment(long generation, JournalReplayListener listener) throws IOException
+    {
+        File segmentFile = getSegmentFile(generation);
+        ChecksummedRecords.Scan scan = ChecksummedRecords.scan(segmentFile, FileFormat.ORDER_JOURNAL);
+
+        boolean hasOrderIds = scan.getFormatVersion() >= ORDER_ID_VERSION;
+        for (byte[] payload : scan.getRecords())
+        {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            int recordType = payload.length > 0 ? input.readByte() : 0;
+            if (recordType == ADD_RECORD)
+            {
+                long orderId = hasOrderIds ? OrderCodec.readVarLong(input) : 0;
+                Order order = OrderCodec.readOrder(input);
+                order.setOrderId(orderId);
+                listener.onOrderAdded(order);
+            }
+            else if (recordType == DELIVER_RECORD)
+            {
+                listener.onOrderDelivered(hasOrderIds ? OrderCodec.readVarLong(input) : 0);
+            }
+            else if (recordType == DELIVER_BATCH_RECORD)
+            {
+                long orderCount = OrderCodec.readVarLong(input);
+                for (long i = 0; i < orderCount; i++)
+                {
+                    listener.onOrderDelivered(OrderCodec.readVarLong(input));
+                }
+            }
+            else
+            {
+                throw new IOException("Unknown journal record in segment " + generation);
+            }
+        }
+
+        if (scan.getDiscardedBytes() > 0)
+        {
+            ChecksummedRecords.truncate(segmentFile, scan.getValidLength());
+            discardedBytes += scan.getDiscardedBytes();
+        }
+        return scan.getRecords().size();
+    }
+
+    /**
+     * Starts a new segment. Records appended afterwards are not covered by a snapshot
+     * taken before the rotation.
+     * @return the generation of the new segment
+     */
+    public synchronized long rotate()
+    {
+        close();
+        currentGeneration++;
+        pendingRecordCount = 0;
+        return currentGeneration;
+    }
+}
@@ -0,0 +1,227 @@
+package com.restaurant.orderManagement.persistence;
+
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Index of every order's placement time, kept sorted in a primitive array of epoch seconds
+ * with the customer name of each order alongside. Counting the orders placed in a time range is
+ * two binary searches, and the customers who ordered in a range are read from a single slice, so
+ * neither depends on how much history there is outside the range. Live orders arrive almost in time
+ * order, so a single add is placed by a short walk back from the end rather than a shift of the array.
+ * Stored times, which are written customer by customer rather than in time order, are added in bulk
+ * and sorted once.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderTimeIndex
+{
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private long[] orderTimes;
+    private String[] customerNames;
+    private int orderCount;
+
+    /**
+     * Default constructor for OrderTimeIndex
+     */
+    public OrderTimeIndex()
+    {
+        this.orderTimes = new long[INITIAL_CAPACITY];
+        this.customerNames = new String[INITIAL_CAPACITY];
+        this.orderCount = 0;
+    }
+
+    /**
+     * Adds an order's placement time
+     * @param orderTime the placement time in epoch seconds
+     * @param customerName the lowercase customer name, shared by all of the customer's entries
+     */
+    public synchronized void add(long orderTime, String customerName)
+    {
+        if (orderCount == orderTimes.length)
+        {
+            orderTimes = Arrays.copyOf(orderTimes, orderCount * 2);
+            customerNames = Arrays.copyOf(customerNames, orderCount * 2);
+        }
+
+        int position = orderCount;
+        while (position > 0 && orderTimes[position - 1] > orderTime)
+        {
+            position--;
+        }
+        System.arraycopy(orderTimes, position, orderTimes, position + 1, orderCount - position);
+        System.arraycopy(customerNames, position, customerNames, position + 1, orderCount - position);
+        orderTimes[position] = orderTime;
+        customerNames[position] = customerName;
+        orderCount++;
+    }
+
+    /**
+     * Adds a batch of placement times in any order, sorting them together with the times already indexed
+     * in a single pass rather than placing them one at a time
+     * @param times the placement times in epoch seconds
+     * @param names the lowercase customer name of each time
+     * @param count the number of times to add from the start of the arrays
+     */
+    public synchronized void addAll(long[] times, String[] names, int count)
+    {
+        int total = orderCount + count;
+        long[] unsortedTimes = Arrays.copyOf(orderTimes, total);
+        String[] unsortedNames = Arrays.copyOf(customerNames, total);
+        System.arraycopy(times, 0, unsortedTimes, orderCount, count);
+        System.arraycopy(names, 0, unsortedNames, orderCount, count);
+
+        int capacity = Math.max(INITIAL_CAPACITY, total);
+        orderTimes = new long[capacity];
+        customerNames = new String[capacity];
+        int[] positions = sortByTime(unsortedTimes, total);
+        for (int i = 0; i < total; i++)
+        {
+            orderTimes[i] = unsortedTimes[positions[i]];
+            customerNames[i] = unsortedNames[positions[i]];
+        }
+        orderCount = total;
+    }
+
+    /**
+     * Counts the orders placed in a time range
+     * @param fromTime the start of the range in epoch seconds, inclusive
+     * @param toTime the end of the range in epoch seconds, exclusive
+     * @return the number of orders placed in the range
+     */
+    public synchronized int countBetween(long fromTime, long toTime)
+    {
+        return Math.max(0, findFirstAtOrAfter(toTime) - findFirstAtOrAfter(fromTime));
+    }
+
+    /**
+     * Finds the first position whose time is at or after a given time
+     * @param time the time in epoch seconds
+     * @return the position, or the entry count if every entry is earlier
+     */
+    private int findFirstAtOrAfter(long time)
+    {
+        int low = 0;
+        int high = orderCount;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (orderTimes[middle] < time)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the customers who placed orders in a time range
+     * @param fromTime the start of the range in epoch seconds, inclusive
+     * @param toTime the end of the range in epoch seconds, exclusive
+     * @return the lowercase customer names, in the order of their first order in the range
+     */
+    public synchronized Set<String> getCustomerNamesBetween(long fromTime, long toTime)
+    {
+        Set<String> names = new LinkedHashSet<String>();
+        for (int position = findFirstAtOrAfter(fromTime); position < orderCount && orderTimes[position] < toTime; position++)
+        {
+            names.add(customerNames[position]);
+        }
+        return names;
+    }
+
+    /**
+     * Finds each customer's oldest order placed at or after a start time of their own, in one pass over
+     * the index
+     * @param fromTimes gives the start time in epoch seconds of a lowercase customer name, asked once
+     *                  per customer
+     * @return the time in epoch seconds of each customer's oldest order from their start time, for every
+     *         customer who has one
+     */
+    public synchronized Map<String, Long> getOldestTimesFrom(ToLongFunction<String> fromTimes)
+    {
+        Map<String, Long> startTimes = new HashMap<String, Long>();
+        Map<String, Long> oldestTimes = new HashMap<String, Long>();
+        for (int position = 0; position < orderCount; position++)
+        {
+            String customerName = customerNames[position];
+            if (!oldestTimes.containsKey(customerName)
+                    && orderTimes[position] >= startTimes.computeIfAbsent(customerName, fromTimes::applyAsLong))
+            {
+                oldestTimes.put(customerName, orderTimes[position]);
+            }
+        }
+        return oldestTimes;
+    }
+
+    /**
+     * Works out the time order of a batch of times. Each time is packed with its position into one
+     * primitive key, relative to the earliest time, so a single primitive sort orders them; times spread
+     * too widely to pack fall back to sorting boxed positions.
+     * @param times the times in epoch seconds
+     * @param count the number of times to sort from the start of the array
+     * @return the positions of the times, earliest first
+     */
+    private static int[] sortByTime(long[] times, int count)
+    {
+        int[] positions = new int[count];
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        boolean sorted = true;
+        for (int i = 0; i < count; i++)
+        {
+            positions[i] = i;
+            sorted = sorted && (i == 0 || times[i - 1] <= times[i]);
+            minTime = Math.min(minTime, times[i]);
+            maxTime = Math.max(maxTime, times[i]);
+        }
+        if (sorted)
+        {
+            return positions;
+        }
+
+        int positionBits = 32 - Integer.numberOfLeadingZeros(count - 1);
+        long span = maxTime - minTime;
+        if (span >= 0 && 64 - Long.numberOfLeadingZeros(span) + positionBits < 64)
+        {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++)
+            {
+                keys[i] = ((times[i] - minTime) << positionBits) | i;
+            }
+            Arrays.sort(keys);
+            long positionMask = (1L << positionBits) - 1;
+            for (int i = 0; i < count; i++)
+            {
+                positions[i] = (int) (keys[i] & positionMask);
+            }
+            return positions;
+        }
+
+        Integer[] boxedPositions = new Integer[count];
+        for (int i = 0; i < count; i++)
+        {
+            boxedPositions[i] = i;
+        }
+        Arrays.sort(boxedPositions, Comparator.comparingLong(position -> times[position]));
+        for (int i = 0; i < count; i++)
+        {
+            positions[i] = boxedPositions[i];
+        }
+        return positions;
+    }
+
+    /**
+     * Gets the number of orders indexed
+     * @return the order count
+     */
+    public synchronized int size()
+    {
+        return orderCount;
+    }
+}
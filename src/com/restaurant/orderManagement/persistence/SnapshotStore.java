@@ -0,0 +1,135 @@
+package com.restaurant.orderManagement.persistence;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Collection;
+
+/**
+ * Reads and writes the snapshot file of the order queue.
+ * The snapshot records the first journal generation it does not cover and is
+ * replaced atomically so a crash mid-write leaves the previous snapshot intact.
+ * The whole snapshot is a single checksummed record, so a damaged file is reported
+ * instead of being half loaded. A snapshot that could not be read, like a legacy file that
+ * has not been migrated, is never written over, so its orders can still be recovered.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class SnapshotStore
+{
+    private static final int ORDER_ID_VERSION = 2;
+
+    private final File ordersFile;
+    private boolean unreadable;
+
+    /**
+     * Constructor for SnapshotStore
+     * @param ordersFileName the name of the order queue snapshot file
+     */
+    public SnapshotStore(String ordersFileName)
+    {
+        this.ordersFile = new File(ordersFileName);
+        this.unreadable = false;
+    }
+
+    /**
+     * Reads the order queue snapshot
+     * @param orderQueue the queue the loaded orders are appended to. Orders from snapshots written
+     *                   before orders had ids are loaded with an id of 0.
+     * @return the first journal generation not covered by the snapshot, 0 if there is no snapshot
+     * @throws IOException if the snapshot exists but could not be read, in which case it is never written over
+     */
+    public long readOrders(Collection<Order> orderQueue) throws IOException
+    {
+        if (!ordersFile.exists())
+        {
+            return 0;
+        }
+
+        unreadable = true;
+        try (DataInputStream fileInput = new DataInputStream(new BufferedInputStream(new FileInputStream(ordersFile))))
+        {
+            int version = FileFormat.ORDER_SNAPSHOT.readHeader(fileInput);
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(ChecksummedRecords.readRecord(fileInput)));
+            long generation = OrderCodec.readVarLong(input);
+            if (version < ORDER_ID_VERSION)
+            {
+                orderQueue.addAll(OrderCodec.readOrders(input));
+                unreadable = false;
+                return generation;
+            }
+
+            int orderCount = OrderCodec.readVarInt(input);
+            for (int i = 0; i < orderCount; i++)
+            {
+                long orderId = OrderCodec.readVarLong(input);
+                Order order = OrderCodec.readOrder(input);
+                order.setOrderId(orderId);
+                orderQueue.add(order);
+            }
+            unreadable = false;
+            return generation;
+        }
+    }
+
+    /**
+     * Moves a fully written temporary file over the file it replaces, atomically where the file system
+     * supports it. Also used for customer history segments.
+     * @param temporaryFile the newly written file
+     * @param targetFile the file to replace
+     * @throws IOException if the file could not be moved
+     */
+    static void replaceFile(File temporaryFile, File targetFile) throws IOException
+    {
+        try
+        {
+            Files.move(temporaryFile.toPath(), targetFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(temporaryFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes an order queue snapshot
+     * @param generation the first journal generation not covered by this snapshot
+     * @param orders the queued orders to write, head first
+     * @throws IOException if the snapshot could not be written, or would replace an unmigrated legacy
+     *                     file or a snapshot that could not be read
+     */
+    public void writeOrders(long generation, Collection<Order> orders) throws IOException
+    {
+        if (FileFormat.isLegacySerialized(ordersFile))
+        {
+            throw new IOException("Legacy orders file has not been migrated: " + ordersFile);
+        }
+        if (unreadable && ordersFile.exists())
+        {
+            throw new IOException("Orders file could not be read and is kept for recovery: " + ordersFile);
+        }
+
+        ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream();
+        DataOutputStream snapshotOutput = new DataOutputStream(snapshotBytes);
+        OrderCodec.writeVarLong(snapshotOutput, generation);
+        OrderCodec.writeVarLong(snapshotOutput, orders.size());
+        for (Order order : orders)
+        {
+            OrderCodec.writeVarLong(snapshotOutput, order.getOrderId());
+            OrderCodec.writeOrder(snapshotOutput, order);
+        }
+
+        File temporaryFile = new File(ordersFile.getPath() + ".tmp");
+        try (FileOutputStream fileOutput = new FileOutputStream(temporaryFile))
+        {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+            FileFormat.ORDER_SNAPSHOT.writeHeader(output);
+            ChecksummedRecords.writeRecord(output, snapshotBytes.toByteArray());
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+        replaceFile(temporaryFile, ordersFile);
+    }
+}
@@ -0,0 +1,208 @@
+package com.restaurant.orderManagement.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for order intake. An order is admitted only while the number of orders in
+ * flight, placed but not yet delivered, is below a maximum and the intake rate is within its limit,
+ * so a spike is turned away at once with an estimated wait instead of piling up behind the queue.
+ * The rate limit is a lock-free generic cell rate algorithm that allows a burst of up to one
+ * second's worth of orders. Accepted and rejected orders are counted.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class AdmissionController
+{
+    private static final double DELIVERY_INTERVAL_WEIGHT = 0.2;
+
+    private final int maxQueueDepth;
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicInteger queueDepth;
+    private final AtomicLong theoreticalArrivalNanos;
+    private final LongAdder acceptedCount;
+    private final LongAdder rejectedCount;
+    private long lastDeliveryNanos;
+    private double averageDeliveryIntervalNanos;
+
+    /**
+     * Constructor for AdmissionController
+     * @param maxQueueDepth the most orders that can be in flight at once
+     * @param maxOrdersPerSecond the sustained intake rate limit, 0 for no limit
+     * @param initialQueueDepth the number of orders already in flight, such as recovered orders
+     */
+    public AdmissionController(int maxQueueDepth, int maxOrdersPerSecond, int initialQueueDepth)
+    {
+        if (maxQueueDepth < 1 || maxOrdersPerSecond < 0)
+        {
+            throw new IllegalArgumentException("Queue depth must be positive and the rate cannot be negative");
+        }
+        this.maxQueueDepth = maxQueueDepth;
+        this.emissionIntervalNanos = maxOrdersPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxOrdersPerSecond : 0;
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(maxOrdersPerSecond - 1, 0);
+        this.queueDepth = new AtomicInteger(initialQueueDepth);
+        this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+        this.acceptedCount = new LongAdder();
+        this.rejectedCount = new LongAdder();
+        this.lastDeliveryNanos = 0;
+        this.averageDeliveryIntervalNanos = 0;
+    }
+
+    /**
+     * Admits a number of orders, or rejects them all
+     * @param orderCount the number of orders to admit
+     * @throws OrderRejectedException if the orders would overfill the queue or exceed the intake rate
+     */
+    public void admit(int orderCount)
+    {
+        reserveDepth(orderCount);
+        long rateWaitNanos = reserveRate(orderCount);
+        if (rateWaitNanos > 0)
+        {
+            queueDepth.addAndGet(-orderCount);
+            rejectedCount.add(orderCount);
+            throw new OrderRejectedException("Orders are arriving faster than the kitchen can take them",
+                    TimeUnit.NANOSECONDS.toMillis(rateWaitNanos) + 1);
+        }
+        acceptedCount.add(orderCount);
+    }
+
+    /**
+     * Admits a bulk import, or rejects it whole. An import is checked against the queue depth only,
+     * since a batch arriving all at once is the point of an import, not a spike to smooth out.
+     * @param orderCount the number of orders in the import
+     * @throws OrderRejectedException if the orders would overfill the queue
+     */
+    public void admitBatch(int orderCount)
+    {
+        reserveDepth(orderCount);
+        acceptedCount.add(orderCount);
+    }
+
+    /**
+     * Estimates how long it takes for a number of orders to be delivered, from the recent delivery rate
+     * @param orderCount the number of deliveries to wait for
+     * @return the estimated wait in milliseconds, or -1 if nothing has been delivered yet
+     */
+    private synchronized long estimateDeliveryWaitMillis(int orderCount)
+    {
+        if (averageDeliveryIntervalNanos == 0)
+        {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis((long) (averageDeliveryIntervalNanos * orderCount)) + 1;
+    }
+
+    /**
+     * Gets the number of orders admitted so far
+     * @return the accepted order count
+     */
+    public long getAcceptedCount()
+    {
+        return acceptedCount.sum();
+    }
+
+    /**
+     * Gets the number of orders currently in flight
+     * @return the orders admitted and not yet delivered or withdrawn
+     */
+    public int getQueueDepth()
+    {
+        return queueDepth.get();
+    }
+
+    /**
+     * Gets the number of orders turned away so far
+     * @return the rejected order count
+     */
+    public long getRejectedCount()
+    {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Records delivered orders, freeing their places in the queue and updating the delivery rate
+     * used for wait estimates
+     * @param orderCount the number of orders delivered together
+     */
+    public void ordersDelivered(int orderCount)
+    {
+        queueDepth.addAndGet(-orderCount);
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            if (lastDeliveryNanos != 0)
+            {
+                double interval = (double) (now - lastDeliveryNanos) / orderCount;
+                averageDeliveryIntervalNanos = averageDeliveryIntervalNanos == 0 ? interval
+                        : averageDeliveryIntervalNanos + DELIVERY_INTERVAL_WEIGHT * (interval - averageDeliveryIntervalNanos);
+            }
+            lastDeliveryNanos = now;
+        }
+    }
+
+    /**
+     * Frees the places of admitted orders that were then rejected as invalid, so they no longer
+     * count as accepted
+     * @param orderCount the number of orders withdrawn
+     */
+    public void ordersWithdrawn(int orderCount)
+    {
+        queueDepth.addAndGet(-orderCount);
+        acceptedCount.add(-orderCount);
+    }
+
+    /**
+     * Reserves places in the queue for a number of orders
+     * @param orderCount the number of orders
+     * @throws OrderRejectedException if the orders would overfill the queue
+     */
+    private void reserveDepth(int orderCount)
+    {
+        int depth;
+        do
+        {
+            depth = queueDepth.get();
+            if (depth + orderCount > maxQueueDepth)
+            {
+                rejectedCount.add(orderCount);
+                throw new OrderRejectedException("The order queue is full",
+                        estimateDeliveryWaitMillis(depth + orderCount - maxQueueDepth));
+            }
+        }
+        while (!queueDepth.compareAndSet(depth, depth + orderCount));
+    }
+
+    /**
+     * Reserves intake rate for a number of orders
+     * @param orderCount the number of orders
+     * @return 0 if the orders conform to the rate limit, otherwise how long until they would in nanoseconds
+     */
+    private long reserveRate(int orderCount)
+    {
+        if (emissionIntervalNanos == 0)
+        {
+            return 0;
+        }
+
+        long increment = emissionIntervalNanos * orderCount;
+        while (true)
+        {
+            long now = System.nanoTime();
+            long arrival = theoreticalArrivalNanos.get();
+            long earliest = Math.max(arrival, now);
+            long wait = earliest + increment - emissionIntervalNanos - burstToleranceNanos - now;
+            if (wait > 0)
+            {
+                return wait;
+            }
+            if (theoreticalArrivalNanos.compareAndSet(arrival, earliest + increment))
+            {
+                return 0;
+            }
+        }
+    }
+}
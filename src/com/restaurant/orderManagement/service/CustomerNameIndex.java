@@ -0,0 +1,201 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Order;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Substring index over the customer names of queued orders. Names are lower-cased once, when
+ * their first order is added, and every distinct name is posted under each of its trigrams.
+ * A search looks up every trigram of the query and only checks the names posted under the
+ * rarest one, so its cost depends on how many names could match rather than on how many orders
+ * are queued. Queries shorter than a trigram check every distinct name, and as they match most
+ * names, callers holding the orders in queue order may find a plain scan cheaper for them. Searches run in parallel; adds and removes are serialised.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class CustomerNameIndex
+{
+    public static final int GRAM_LENGTH = 3;
+
+    private final Map<String, NavigableMap<Long, Order>> ordersByName;
+    private final Map<Long, Set<String>> namesByTrigram;
+    private final ReadWriteLock indexLock;
+
+    /**
+     * Default constructor for CustomerNameIndex
+     */
+    public CustomerNameIndex()
+    {
+        this.ordersByName = new HashMap<String, NavigableMap<Long, Order>>();
+        this.namesByTrigram = new HashMap<Long, Set<String>>();
+        this.indexLock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Adds an order under its customer's name
+     * @param order the queued order, with its id assigned
+     */
+    public void add(Order order)
+    {
+        String name = order.getCustomerName().toLowerCase();
+        indexLock.writeLock().lock();
+        try
+        {
+            NavigableMap<Long, Order> nameOrders = ordersByName.get(name);
+            if (nameOrders == null)
+            {
+                nameOrders = new TreeMap<Long, Order>();
+                ordersByName.put(name, nameOrders);
+                for (int i = 0; i + GRAM_LENGTH <= name.length(); i++)
+                {
+                    namesByTrigram.computeIfAbsent(trigram(name, i), key -> new HashSet<String>()).add(name);
+                }
+            }
+            nameOrders.put(order.getOrderId(), order);
+        }
+        finally
+        {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a batch of orders, taking the index lock once
+     * @param orders the queued orders, with their ids assigned
+     */
+    public void addAll(Collection<Order> orders)
+    {
+        indexLock.writeLock().lock();
+        try
+        {
+            for (Order order : orders)
+            {
+                add(order);
+            }
+        }
+        finally
+        {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the candidate names for a query from the trigram postings
+     * @param query the lower-cased query, at least a trigram long
+     * @return the names posted under the query's rarest trigram, or an empty set if any trigram is unknown
+     */
+    private Set<String> findCandidateNames(String query)
+    {
+        Set<String> candidateNames = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++)
+        {
+            Set<String> names = namesByTrigram.get(trigram(query, i));
+            if (names == null)
+            {
+                return Collections.emptySet();
+            }
+            if (candidateNames == null || names.size() < candidateNames.size())
+            {
+                candidateNames = names;
+            }
+        }
+        return candidateNames;
+    }
+
+    /**
+     * Removes an order from the index, and its customer's name once the customer has no orders left
+     * @param order the order that left the queue
+     */
+    public void remove(Order order)
+    {
+        String name = order.getCustomerName().toLowerCase();
+        indexLock.writeLock().lock();
+        try
+        {
+            NavigableMap<Long, Order> nameOrders = ordersByName.get(name);
+            if (nameOrders == null || nameOrders.remove(order.getOrderId()) == null || !nameOrders.isEmpty())
+            {
+                return;
+            }
+
+            ordersByName.remove(name);
+            for (int i = 0; i + GRAM_LENGTH <= name.length(); i++)
+            {
+                Long key = trigram(name, i);
+                Set<String> names = namesByTrigram.get(key);
+                if (names != null && names.remove(name) && names.isEmpty())
+                {
+                    namesByTrigram.remove(key);
+                }
+            }
+        }
+        finally
+        {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a batch of orders, taking the index lock once
+     * @param orders the orders that left the queue
+     */
+    public void removeAll(Collection<Order> orders)
+    {
+        indexLock.writeLock().lock();
+        try
+        {
+            for (Order order : orders)
+            {
+                remove(order);
+            }
+        }
+        finally
+        {
+            indexLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the indexed orders whose customer name contains the given text, ignoring case
+     * @param text the text to search for
+     * @return the matching orders in order id order, which is the order they were queued in
+     */
+    public List<Order> search(String text)
+    {
+        String query = text.toLowerCase();
+        List<Order> matchingOrders = new ArrayList<Order>();
+        indexLock.readLock().lock();
+        try
+        {
+            Collection<String> candidateNames = query.length() >= GRAM_LENGTH ? findCandidateNames(query)
+                    : ordersByName.keySet();
+            for (String name : candidateNames)
+            {
+                if (name.contains(query))
+                {
+                    matchingOrders.addAll(ordersByName.get(name).values());
+                }
+            }
+        }
+        finally
+        {
+            indexLock.readLock().unlock();
+        }
+
+        matchingOrders.sort(Comparator.comparingLong(Order::getOrderId));
+        return matchingOrders;
+    }
+
+    /**
+     * Packs the three characters starting at a position into a trigram key
+     * @param text the lower-cased text
+     * @param start the position of the first character
+     * @return the trigram key
+     */
+    private static long trigram(String text, int start)
+    {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+}
@@ -0,0 +1,174 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.*;
+import com.restaurant.orderManagement.model.enums.KitchenStation;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares orders across the kitchen stations. Each order is split into one work item per
+ * food item: pizzas go to the ovens and pasta to the stove. Every station is a work-stealing
+ * pool with one worker per oven or burner, so items from different orders are spread over
+ * all free workers of their station, and an order is ready once its last item is done.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class KitchenScheduler
+{
+    private final Map<KitchenStation, ForkJoinPool> stations;
+    private final long itemPreparationMillis;
+
+    /**
+     * Constructor for KitchenScheduler
+     * @param ovenCount the number of pizzas that can be baked at once
+     * @param stoveCount the number of pasta dishes that can be cooked at once
+     * @param itemPreparationMillis the time each food item occupies its station, 0 for none
+     */
+    public KitchenScheduler(int ovenCount, int stoveCount, long itemPreparationMillis)
+    {
+        if (ovenCount < 1 || stoveCount < 1)
+        {
+            throw new IllegalArgumentException("Every kitchen station needs at least one worker");
+        }
+        this.stations = new EnumMap<KitchenStation, ForkJoinPool>(KitchenStation.class);
+        stations.put(KitchenStation.OVEN, createStation(KitchenStation.OVEN, ovenCount));
+        stations.put(KitchenStation.STOVE, createStation(KitchenStation.STOVE, stoveCount));
+        this.itemPreparationMillis = itemPreparationMillis;
+    }
+
+    /**
+     * Creates the work-stealing pool of one station. Items are taken oldest first, so orders
+     * are prepared in roughly the order they were placed.
+     * @param station the station
+     * @param workerCount the number of items the station prepares at once
+     * @return the station's pool
+     */
+    private static ForkJoinPool createStation(KitchenStation station, int workerCount)
+    {
+        String threadName = "kitchen-" + station.name().toLowerCase() + "-";
+        return new ForkJoinPool(workerCount, pool ->
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(threadName + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    /**
+     * Gets the station a food item is prepared at
+     * @param foodItem the food item
+     * @return the oven for pizza, the stove for pasta
+     * @throws IllegalArgumentException if the kitchen has no station for the food item
+     */
+    public static KitchenStation getStation(Food foodItem)
+    {
+        if (foodItem instanceof Pizza)
+        {
+            return KitchenStation.OVEN;
+        }
+        if (foodItem instanceof Pasta)
+        {
+            return KitchenStation.STOVE;
+        }
+        throw new IllegalArgumentException("No kitchen station for " + foodItem);
+    }
+
+    /**
+     * Checks whether the kitchen has a station for a food item
+     * @param foodItem the food item
+     * @return true for pizza and pasta
+     */
+    public static boolean hasStation(Food foodItem)
+    {
+        return foodItem instanceof Pizza || foodItem instanceof Pasta;
+    }
+
+    /**
+     * Gets the number of food items waiting for a station
+     * @param station the station
+     * @return the number of items queued and not yet started
+     */
+    public long getWaitingItemCount(KitchenStation station)
+    {
+        ForkJoinPool pool = stations.get(station);
+        return pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount();
+    }
+
+    /**
+     * Sends every food item of an order to its station
+     * @param order the order to prepare
+     * @return a future completed with the order once all its food items are prepared
+     */
+    public CompletableFuture<Order> prepare(Order order)
+    {
+        CompletableFuture<Order> ready = new CompletableFuture<Order>();
+        List<Food> foodItems = order.getFoodItems();
+        if (foodItems.isEmpty())
+        {
+            ready.complete(order);
+            return ready;
+        }
+
+        AtomicInteger remainingItems = new AtomicInteger(foodItems.size());
+        for (Food foodItem : foodItems)
+        {
+            stations.get(getStation(foodItem)).execute(() ->
+            {
+                if (prepareItem() && remainingItems.decrementAndGet() == 0)
+                {
+                    ready.complete(order);
+                }
+            });
+        }
+        return ready;
+    }
+
+    /**
+     * Occupies the current station worker for the preparation time of one food item
+     * @return true if the item was prepared, false if the kitchen was shut down first
+     */
+    private boolean prepareItem()
+    {
+        if (itemPreparationMillis > 0)
+        {
+            try
+            {
+                Thread.sleep(itemPreparationMillis);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops every station. Items still waiting or being prepared are abandoned and their
+     * orders never become ready.
+     */
+    public void shutdown()
+    {
+        for (ForkJoinPool pool : stations.values())
+        {
+            pool.shutdownNow();
+        }
+        for (ForkJoinPool pool : stations.values())
+        {
+            try
+            {
+                pool.awaitTermination(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
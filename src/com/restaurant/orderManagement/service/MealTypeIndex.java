@@ -0,0 +1,164 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Order;
+import com.restaurant.orderManagement.model.enums.MealType;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Index of queued orders by meal type. Every meal type has its own concurrent map of orders keyed by
+ * order id and its own counter, so filtering only visits the orders of that type, in the order they
+ * were queued, and counting a type is a single read. The whole queue can also be read a page at a
+ * time from any order id by merging the types, visiting only the orders on the page. Adds and
+ * removes never block each other.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class MealTypeIndex
+{
+    private final Map<MealType, ConcurrentNavigableMap<Long, Order>> ordersByMealType;
+    private final Map<MealType, AtomicInteger> orderCounts;
+
+    /**
+     * Default constructor for MealTypeIndex
+     */
+    public MealTypeIndex()
+    {
+        this.ordersByMealType = new EnumMap<MealType, ConcurrentNavigableMap<Long, Order>>(MealType.class);
+        this.orderCounts = new EnumMap<MealType, AtomicInteger>(MealType.class);
+        for (MealType mealType : MealType.values())
+        {
+            ordersByMealType.put(mealType, new ConcurrentSkipListMap<Long, Order>());
+            orderCounts.put(mealType, new AtomicInteger(0));
+        }
+    }
+
+    /**
+     * Adds an order under its meal type
+     * @param order the queued order, with its id assigned
+     */
+    public void add(Order order)
+    {
+        if (ordersByMealType.get(order.getMealType()).put(order.getOrderId(), order) == null)
+        {
+            orderCounts.get(order.getMealType()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Adds a batch of orders
+     * @param orders the queued orders, with their ids assigned
+     */
+    public void addAll(Collection<Order> orders)
+    {
+        for (Order order : orders)
+        {
+            add(order);
+        }
+    }
+
+    /**
+     * Gets the number of indexed orders of a meal type
+     * @param mealType the meal type
+     * @return the order count
+     */
+    public int getCount(MealType mealType)
+    {
+        return orderCounts.get(mealType).get();
+    }
+
+    /**
+     * Gets the indexed orders of every meal type that come after an order id, merged into order id order
+     * @param afterOrderId the order id to start after
+     * @param maxOrders the most orders to return
+     * @return up to maxOrders orders in order id order, which is the order they were queued in
+     */
+    public List<Order> getOrdersAfter(long afterOrderId, int maxOrders)
+    {
+        List<Iterator<Order>> iterators = new ArrayList<Iterator<Order>>();
+        List<Order> heads = new ArrayList<Order>();
+        for (ConcurrentNavigableMap<Long, Order> orders : ordersByMealType.values())
+        {
+            Iterator<Order> iterator = orders.tailMap(afterOrderId, false).values().iterator();
+            if (iterator.hasNext())
+            {
+                iterators.add(iterator);
+                heads.add(iterator.next());
+            }
+        }
+
+        List<Order> page = new ArrayList<Order>(Math.min(maxOrders, getTotalCount()));
+        while (page.size() < maxOrders && !heads.isEmpty())
+        {
+            int next = 0;
+            for (int i = 1; i < heads.size(); i++)
+            {
+                if (heads.get(i).getOrderId() < heads.get(next).getOrderId())
+                {
+                    next = i;
+                }
+            }
+            page.add(heads.get(next));
+            if (iterators.get(next).hasNext())
+            {
+                heads.set(next, iterators.get(next).next());
+            }
+            else
+            {
+                iterators.remove(next);
+                heads.remove(next);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Gets the indexed orders of a meal type
+     * @param mealType the meal type
+     * @return the orders in order id order, which is the order they were queued in
+     */
+    public List<Order> getOrders(MealType mealType)
+    {
+        return new ArrayList<Order>(ordersByMealType.get(mealType).values());
+    }
+
+    /**
+     * Gets the number of indexed orders of every meal type
+     * @return the total order count
+     */
+    public int getTotalCount()
+    {
+        int totalCount = 0;
+        for (AtomicInteger orderCount : orderCounts.values())
+        {
+            totalCount += orderCount.get();
+        }
+        return totalCount;
+    }
+
+    /**
+     * Removes an order from the index
+     * @param order the order that left the queue
+     */
+    public void remove(Order order)
+    {
+        if (ordersByMealType.get(order.getMealType()).remove(order.getOrderId()) != null)
+        {
+            orderCounts.get(order.getMealType()).decrementAndGet();
+        }
+    }
+
+    /**
+     * Removes a batch of orders
+     * @param orders the orders that left the queue
+     */
+    public void removeAll(Collection<Order> orders)
+    {
+        for (Order order : orders)
+        {
+            remove(order);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Order;
+import com.restaurant.orderManagement.model.entity.OrderEvent;
+import com.restaurant.orderManagement.model.enums.OrderEventType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes order lifecycle events to any number of subscribers. Every subscriber has its own
+ * bounded buffer and is fed on its own consumer task as it signals demand. Events are offered
+ * without blocking, so a subscriber whose buffer is full misses the event instead of stalling
+ * order intake or delivery; missed events are counted. Publishing costs a single volatile read
+ * while nobody is subscribed.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderEventPublisher implements Flow.Publisher<OrderEvent>
+{
+    private final ExecutorService executor;
+    private final SubmissionPublisher<OrderEvent> publisher;
+    private final LongAdder droppedCount;
+
+    /**
+     * Constructor for OrderEventPublisher
+     * @param bufferSize the most events buffered for a subscriber that has not yet consumed them
+     */
+    public OrderEventPublisher(int bufferSize)
+    {
+        this.executor = Executors.newCachedThreadPool(runnable ->
+        {
+            Thread thread = new Thread(runnable, "order-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.publisher = new SubmissionPublisher<OrderEvent>(executor, bufferSize);
+        this.droppedCount = new LongAdder();
+    }
+
+    /**
+     * Completes every subscription once its buffered events are consumed. Events published
+     * afterwards are ignored.
+     */
+    public void close()
+    {
+        publisher.close();
+        executor.shutdown();
+    }
+
+    /**
+     * Gets the number of events missed by subscribers whose buffers were full
+     * @return the dropped event count, summed over all subscribers
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Publishes an event to every current subscriber without waiting. Safe to call from any number of threads.
+     * @param eventType what happened to the order
+     * @param order the order it happened to
+     */
+    public void publish(OrderEventType eventType, Order order)
+    {
+        if (!publisher.hasSubscribers())
+        {
+            return;
+        }
+
+        try
+        {
+            publisher.offer(new OrderEvent(eventType, order), (subscriber, event) ->
+            {
+                droppedCount.increment();
+                return false;
+            });
+        }
+        catch (IllegalStateException e)
+        {
+            // Closed during shutdown; late deliveries are no longer published
+        }
+    }
+
+    /**
+     * Adds a subscriber, which receives the events published from now on as it requests them
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super OrderEvent> subscriber)
+    {
+        publisher.subscribe(subscriber);
+    }
+}
@@ -0,0 +1,318 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Food;
+import com.restaurant.orderManagement.model.entity.Order;
+import com.restaurant.orderManagement.model.enums.PastaTopping;
+import com.restaurant.orderManagement.model.enums.PizzaTopping;
+import com.restaurant.orderManagement.util.Json;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Builds orders from the fields sent by web clients and partner systems, and reads whole batches
+ * of them from import files. A JSON file holds an array of order objects, each with
+ * "customerName", "contactNumber", "deliveryAddress" and "items" as for POST /orders. A CSV file
+ * has a header row naming the columns customerName, contactNumber, deliveryAddress and items, where
+ * items is a list of menu item names separated by semicolons; fields containing commas are quoted.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderImporter
+{
+    private static final String[] CSV_COLUMNS = {"customerName", "contactNumber", "deliveryAddress", "items"};
+
+    private final FoodFactory foodFactory;
+
+    /**
+     * Constructor for OrderImporter
+     * @param foodFactory the factory food items are created with
+     */
+    public OrderImporter(FoodFactory foodFactory)
+    {
+        this.foodFactory = foodFactory;
+    }
+
+    /**
+     * Creates a food item from one element of an order's items
+     * @param item a menu item name, or an object with a menu item name or a food type and toppings
+     * @return the created food item
+     * @throws IllegalArgumentException if the item is not recognised
+     */
+    private Food createFoodItem(Object item)
+    {
+        if (item instanceof String)
+        {
+            return foodFactory.createMenuItemByName((String) item);
+        }
+        if (!(item instanceof Map))
+        {
+            throw new IllegalArgumentException("Each item must be a menu item name or an object");
+        }
+
+        Map<?, ?> itemFields = (Map<?, ?>) item;
+        if (itemFields.containsKey("menuItem"))
+        {
+            return foodFactory.createMenuItemByName(getString(itemFields, "menuItem"));
+        }
+
+        String foodType = getString(itemFields, "type");
+        Map<String, Object> parameters = new HashMap<String, Object>();
+        if (itemFields.get("toppings") instanceof List)
+        {
+            List<PizzaTopping> toppings = new ArrayList<PizzaTopping>();
+            for (Object topping : (List<?>) itemFields.get("toppings"))
+            {
+                toppings.add(parseTopping(PizzaTopping.class, topping));
+            }
+            parameters.put("toppings", toppings);
+        }
+        if (itemFields.get("topping") != null)
+        {
+            parameters.put("topping", parseTopping(PastaTopping.class, itemFields.get("topping")));
+        }
+        return foodFactory.createFood(foodType, parameters);
+    }
+
+    /**
+     * Builds an order from its fields, applying the same checks as the console
+     * @param fields the order fields: customerName, contactNumber, deliveryAddress and a list of items
+     * @return the order, not yet placed
+     * @throws IllegalArgumentException if the fields are not a valid order
+     */
+    public Order createOrder(Map<?, ?> fields)
+    {
+        String contactNumber = getString(fields, "contactNumber");
+        if (!contactNumber.matches("\\d{8,15}"))
+        {
+            throw new IllegalArgumentException("Contact number must be 8-15 digits only");
+        }
+
+        Order order = new Order(getString(fields, "customerName"), contactNumber, getString(fields, "deliveryAddress"));
+        if (!(fields.get("items") instanceof List) || ((List<?>) fields.get("items")).isEmpty())
+        {
+            throw new IllegalArgumentException("Order must contain at least one food item");
+        }
+        for (Object item : (List<?>) fields.get("items"))
+        {
+            order.addFoodItem(createFoodItem(item));
+        }
+        return order;
+    }
+
+    /**
+     * Gets a required string member of an order's fields
+     * @param fields the order fields
+     * @param name the member name
+     * @return the trimmed member value
+     * @throws IllegalArgumentException if the member is missing, not a string or empty
+     */
+    private static String getString(Map<?, ?> fields, String name)
+    {
+        Object value = fields.get(name);
+        if (!(value instanceof String) || ((String) value).trim().isEmpty())
+        {
+            throw new IllegalArgumentException(name + " is required");
+        }
+        return ((String) value).trim();
+    }
+
+    /**
+     * Converts a topping name into a topping constant
+     * @param toppingType the topping enum
+     * @param topping the topping name, in any case
+     * @param <T> the topping enum type
+     * @return the topping
+     * @throws IllegalArgumentException if the name is not a topping of that type
+     */
+    private static <T extends Enum<T>> T parseTopping(Class<T> toppingType, Object topping)
+    {
+        if (topping instanceof String)
+        {
+            try
+            {
+                return Enum.valueOf(toppingType, ((String) topping).trim().toUpperCase());
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Reported below with a readable message
+            }
+        }
+        throw new IllegalArgumentException("Unknown topping: " + topping);
+    }
+
+    /**
+     * Reads orders from CSV lines
+     * @param lines the lines of the file, header first
+     * @return the orders, in file order
+     * @throws IllegalArgumentException if the header or any row is not valid, naming the line
+     */
+    private List<Order> readCsv(List<String> lines)
+    {
+        if (lines.isEmpty())
+        {
+            throw new IllegalArgumentException("CSV file has no header row");
+        }
+
+        List<String> header = splitCsvLine(lines.get(0), 1);
+        int[] columnIndexes = new int[CSV_COLUMNS.length];
+        for (int i = 0; i < CSV_COLUMNS.length; i++)
+        {
+            columnIndexes[i] = header.indexOf(CSV_COLUMNS[i]);
+            if (columnIndexes[i] < 0)
+            {
+                throw new IllegalArgumentException("CSV header is missing the " + CSV_COLUMNS[i] + " column");
+            }
+        }
+
+        List<Order> orders = new ArrayList<Order>(lines.size() - 1);
+        for (int lineNumber = 2; lineNumber <= lines.size(); lineNumber++)
+        {
+            String line = lines.get(lineNumber - 1);
+            if (line.trim().isEmpty())
+            {
+                continue;
+            }
+
+            List<String> values = splitCsvLine(line, lineNumber);
+            Map<String, Object> fields = new HashMap<String, Object>();
+            for (int i = 0; i < CSV_COLUMNS.length; i++)
+            {
+                fields.put(CSV_COLUMNS[i], columnIndexes[i] < values.size() ? values.get(columnIndexes[i]) : null);
+            }
+            List<String> items = new ArrayList<String>();
+            if (fields.get("items") != null)
+            {
+                for (String item : ((String) fields.get("items")).split(";"))
+                {
+                    if (!item.trim().isEmpty())
+                    {
+                        items.add(item.trim());
+                    }
+                }
+            }
+            fields.put("items", items);
+
+            try
+            {
+                orders.add(createOrder(fields));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Reads every order in an import file, choosing the format by its .csv or .json extension.
+     * The whole file is checked before anything is returned, so a bad row never leaves half a batch.
+     * @param file the file to import
+     * @return the orders, in file order, not yet placed
+     * @throws IOException if the file could not be read
+     * @throws IllegalArgumentException if the file is not a supported format or contains an invalid order
+     */
+    public List<Order> readFile(File file) throws IOException
+    {
+        String fileName = file.getName().toLowerCase();
+        if (fileName.endsWith(".csv"))
+        {
+            return readCsv(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+        }
+        if (fileName.endsWith(".json"))
+        {
+            return readJson(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        }
+        throw new IllegalArgumentException("Import files must be .csv or .json");
+    }
+
+    /**
+     * Reads orders from a JSON array of order objects
+     * @param text the JSON text
+     * @return the orders, in array order
+     * @throws IllegalArgumentException if the text is not an array of valid orders, naming the order
+     */
+    private List<Order> readJson(String text)
+    {
+        Object parsed = Json.parse(text);
+        if (!(parsed instanceof List))
+        {
+            throw new IllegalArgumentException("JSON import must be an array of orders");
+        }
+
+        List<?> elements = (List<?>) parsed;
+        List<Order> orders = new ArrayList<Order>(elements.size());
+        for (int i = 0; i < elements.size(); i++)
+        {
+            try
+            {
+                if (!(elements.get(i) instanceof Map))
+                {
+                    throw new IllegalArgumentException("Each order must be a JSON object");
+                }
+                orders.add(createOrder((Map<?, ?>) elements.get(i)));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IllegalArgumentException("Order " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Splits a CSV line into its fields. Fields may be quoted, with a doubled quote standing for a quote.
+     * @param line the line to split
+     * @param lineNumber the line number, used in error messages
+     * @return the unquoted fields
+     * @throws IllegalArgumentException if a quoted field is not closed
+     */
+    private static List<String> splitCsvLine(String line, int lineNumber)
+    {
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++)
+        {
+            char character = line.charAt(i);
+            if (quoted)
+            {
+                if (character != '"')
+                {
+                    value.append(character);
+                }
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                {
+                    value.append('"');
+                    i++;
+                }
+                else
+                {
+                    quoted = false;
+                }
+            }
+            else if (character == '"')
+            {
+                quoted = true;
+            }
+            else if (character == ',')
+            {
+                values.add(value.toString().trim());
+                value.setLength(0);
+            }
+            else
+            {
+                value.append(character);
+            }
+        }
+
+        if (quoted)
+        {
+            throw new IllegalArgumentException("Line " + lineNumber + ": unterminated quoted field");
+        }
+        values.add(value.toString().trim());
+        return values;
+    }
+}
@@ -0,0 +1,339 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Order;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Staged order placement over a preallocated ring buffer. Submitted orders are written into the
+ * next free slot and pass through every stage in turn, each stage running on its own thread.
+ * A stage takes every slot its upstream stage has finished in one batch and publishes its progress
+ * once per batch, so the stages overlap and sustained throughput is set by the slowest stage
+ * rather than by the sum of all of them. A stage with nothing to do spins briefly and then parks
+ * until its upstream stage wakes it. Submitters wait for a free slot when the ring is full.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderIntakePipeline
+{
+    private static final int SPIN_LIMIT = 100;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long NOT_DRAINING = Long.MAX_VALUE;
+
+    private final IntakeSlot[] ring;
+    private final int mask;
+    private final AtomicLongArray publishedSequences;
+    private final AtomicLong claimSequence;
+    private final AtomicInteger activeSubmitters;
+    private final List<Stage> stages;
+    private volatile boolean accepting;
+    private volatile long drainSequence;
+
+    /**
+     * One reusable entry of the ring. Its fields are handed from stage to stage by the
+     * stage sequences, so they need no locking of their own.
+     */
+    private static class IntakeSlot
+    {
+        private Order order;
+        private CompletableFuture<Order> result;
+        private boolean rejected;
+    }
+
+    /**
+     * A stage of the pipeline together with its thread and progress
+     */
+    private class Stage implements Runnable
+    {
+        private final String name;
+        private final OrderIntakeStage handler;
+        private final AtomicLong sequence;
+        private Stage upstream;
+        private Stage downstream;
+        private Thread thread;
+        private volatile boolean idle;
+
+        /**
+         * Constructor for Stage
+         * @param name the stage name, used for its thread
+         * @param handler the step the stage runs for each order
+         */
+        private Stage(String name, OrderIntakeStage handler)
+        {
+            this.name = name;
+            this.handler = handler;
+            this.sequence = new AtomicLong(-1);
+            this.upstream = null;
+            this.downstream = null;
+            this.thread = null;
+            this.idle = false;
+        }
+
+        /**
+         * Gets the last sequence this stage may process
+         * @param processed the last sequence this stage has processed
+         * @return the last sequence finished by the upstream stage, or published by submitters
+         */
+        private long getAvailableSequence(long processed)
+        {
+            if (upstream != null)
+            {
+                return upstream.sequence.get();
+            }
+
+            long next = processed + 1;
+            while (publishedSequences.get((int) next & mask) == next)
+            {
+                next++;
+            }
+            return next - 1;
+        }
+
+        /**
+         * Runs one slot through the stage. The last stage completes the submitter's future and clears the slot.
+         * @param slot the slot to process
+         */
+        private void processSlot(IntakeSlot slot)
+        {
+            if (!slot.rejected)
+            {
+                try
+                {
+                    handler.process(slot.order);
+                }
+                catch (RuntimeException e)
+                {
+                    slot.rejected = true;
+                    slot.result.completeExceptionally(e);
+                }
+            }
+
+            if (downstream == null)
+            {
+                CompletableFuture<Order> result = slot.result;
+                Order order = slot.order;
+                boolean rejected = slot.rejected;
+                slot.order = null;
+                slot.result = null;
+                slot.rejected = false;
+                if (!rejected)
+                {
+                    result.complete(order);
+                }
+            }
+        }
+
+        /**
+         * Stage thread loop: processes every available slot as one batch, publishes the progress
+         * and wakes the next stage, until the pipeline is shut down and drained
+         */
+        @Override
+        public void run()
+        {
+            long processed = sequence.get();
+            int idleCount = 0;
+
+            while (true)
+            {
+                long available = getAvailableSequence(processed);
+                if (available > processed)
+                {
+                    for (long next = processed + 1; next <= available; next++)
+                    {
+                        processSlot(ring[(int) next & mask]);
+                    }
+                    processed = available;
+                    sequence.set(processed);
+                    if (downstream != null && downstream.idle)
+                    {
+                        LockSupport.unpark(downstream.thread);
+                    }
+                    idleCount = 0;
+                }
+                else if (processed >= drainSequence)
+                {
+                    return;
+                }
+                else if (++idleCount < SPIN_LIMIT)
+                {
+                    Thread.onSpinWait();
+                }
+                else
+                {
+                    // Checked again after announcing the park, so a wake-up sent in between is never lost
+                    idle = true;
+                    if (getAvailableSequence(processed) == processed && processed < drainSequence)
+                    {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor for OrderIntakePipeline
+     * @param ringSize the number of orders that can be in the pipeline at once, a power of two
+     */
+    public OrderIntakePipeline(int ringSize)
+    {
+        if (ringSize < 1 || Integer.bitCount(ringSize) != 1)
+        {
+            throw new IllegalArgumentException("Ring size must be a power of two");
+        }
+
+        this.ring = new IntakeSlot[ringSize];
+        for (int i = 0; i < ringSize; i++)
+        {
+            ring[i] = new IntakeSlot();
+        }
+        this.mask = ringSize - 1;
+        this.publishedSequences = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++)
+        {
+            publishedSequences.set(i, -1);
+        }
+        this.claimSequence = new AtomicLong(-1);
+        this.activeSubmitters = new AtomicInteger(0);
+        this.stages = new ArrayList<Stage>();
+        this.accepting = false;
+        this.drainSequence = NOT_DRAINING;
+    }
+
+    /**
+     * Adds a stage after the stages added so far. Stages can only be added before start is called.
+     * @param name the stage name, used for its thread
+     * @param stage the step to run for each order
+     */
+    public void addStage(String name, OrderIntakeStage stage)
+    {
+        if (accepting)
+        {
+            throw new IllegalStateException("Stages cannot be added to a running pipeline");
+        }
+
+        Stage newStage = new Stage(name, stage);
+        if (!stages.isEmpty())
+        {
+            Stage lastStage = stages.get(stages.size() - 1);
+            lastStage.downstream = newStage;
+            newStage.upstream = lastStage;
+        }
+        stages.add(newStage);
+    }
+
+    /**
+     * Stops accepting orders, waits until every order already submitted has passed all stages
+     * and stops the stage threads
+     */
+    public void shutdown()
+    {
+        if (!accepting)
+        {
+            return;
+        }
+
+        accepting = false;
+        while (activeSubmitters.get() > 0)
+        {
+            Thread.yield();
+        }
+        drainSequence = claimSequence.get();
+
+        for (Stage stage : stages)
+        {
+            LockSupport.unpark(stage.thread);
+        }
+        for (Stage stage : stages)
+        {
+            try
+            {
+                stage.thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts a thread for every stage and begins accepting orders
+     */
+    public void start()
+    {
+        if (stages.isEmpty())
+        {
+            throw new IllegalStateException("The pipeline has no stages");
+        }
+
+        for (Stage stage : stages)
+        {
+            stage.thread = new Thread(stage, "order-intake-" + stage.name);
+            stage.thread.setDaemon(true);
+            stage.thread.start();
+        }
+        accepting = true;
+    }
+
+    /**
+     * Submits an order to the first stage, waiting for a free slot if the ring is full.
+     * Safe to call from any number of threads.
+     * @param order the order to place
+     * @return a future completed with the order once it has passed every stage, or completed
+     *         exceptionally with the exception a stage rejected it with
+     * @throws IllegalStateException if the pipeline is not running
+     */
+    public CompletableFuture<Order> submit(Order order)
+    {
+        activeSubmitters.incrementAndGet();
+        try
+        {
+            if (!accepting)
+            {
+                throw new IllegalStateException("Order intake is not running");
+            }
+
+            long sequence = claimSequence.incrementAndGet();
+            AtomicLong lastStageSequence = stages.get(stages.size() - 1).sequence;
+            int waitCount = 0;
+            while (sequence - ring.length > lastStageSequence.get())
+            {
+                if (++waitCount < SPIN_LIMIT)
+                {
+                    Thread.onSpinWait();
+                }
+                else
+                {
+                    LockSupport.parkNanos(FULL_PARK_NANOS);
+                }
+            }
+
+            IntakeSlot slot = ring[(int) sequence & mask];
+            CompletableFuture<Order> result = new CompletableFuture<Order>();
+            slot.order = order;
+            slot.result = result;
+            slot.rejected = false;
+            publishedSequences.set((int) sequence & mask, sequence);
+
+            Stage firstStage = stages.get(0);
+            if (firstStage.idle)
+            {
+                LockSupport.unpark(firstStage.thread);
+            }
+            return result;
+        }
+        finally
+        {
+            activeSubmitters.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Order;
+
+/**
+ * One step of order placement, run by an OrderIntakePipeline on the stage's own thread
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public interface OrderIntakeStage
+{
+    /**
+     * Processes one order. Orders reach every stage in the order they were submitted.
+     * @param order the order being placed
+     * @throws IllegalArgumentException if the order must be rejected; later stages then skip it
+     */
+    void process(Order order);
+}
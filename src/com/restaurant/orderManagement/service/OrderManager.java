@@ -6,31 +6,37 @@ import java.io.*;
 import java.util.*;
 
 /**
- * Main class for managing takeaway orders with queue management and file persistence
+ * Console client for managing takeaway orders. Reads choices with a Scanner, prints results,
+ * and leaves the queue, history and persistence to an OrderService.
  * Author: Liaw Hang Sheng
  * Version: 1.0
  */
 public class OrderManager
 {
-    private static final String ORDERS_FILE = "orders.dat";
-    private static final String CUSTOMERS_FILE = "customers.dat";
+    private static final int MAX_DELIVERY_RUN_SIZE = 20;
+    private static final int ORDER_PAGE_SIZE = 10;
 
-    private Queue<Order> orderQueue;
-    private Map<String, List<Order>> customerHistory;
     private Scanner scanner;
     private FoodFactory foodFactory;
+    private OrderService orderService;
 
     /**
-     * Default constructor for OrderManager
+     * Default constructor for OrderManager, backed by a RestaurantOrderService
      */
     public OrderManager()
     {
-        this.orderQueue = new LinkedList<Order>();
-        this.customerHistory = new HashMap<String, List<Order>>();
+        this(new RestaurantOrderService());
+    }
+
+    /**
+     * Constructor for OrderManager with a given order service
+     * @param orderService the service orders are placed with and looked up in
+     */
+    public OrderManager(OrderService orderService)
+    {
         this.scanner = new Scanner(System.in);
         this.foodFactory = new RestaurantFoodFactory();
-        loadOrdersFromFile();
-        loadCustomerHistoryFromFile();
+        this.orderService = orderService;
     }
 
     /**
@@ -122,22 +128,6 @@ public class OrderManager
         System.out.println("Added: " + pizza.toString());
     }
 
-    /**
-     * Adds a new order to the queue and customer history
-     * @param order the order to add
-     */
-    public void addOrder(Order order)
-    {
-        orderQueue.offer(order);
-
-        String customerName = order.getCustomerName().toLowerCase();
-        customerHistory.putIfAbsent(customerName, new ArrayList<Order>());
-        customerHistory.get(customerName).add(order);
-
-        saveOrdersToFile();
-        saveCustomerHistoryToFile();
-    }
-
     /**
      * Adds a pasta item to the order based on user input
      * @param order the order to add the pasta to
@@ -342,7 +332,10 @@ public class OrderManager
             }
         }
 
-        addOrder(order);
+        if (!placeOrder(order))
+        {
+            return;
+        }
         System.out.println("\nOrder created successfully!");
         System.out.println(order.toString());
     }
@@ -406,7 +399,10 @@ public class OrderManager
             }
         }
 
-        addOrder(order);
+        if (!placeOrder(order))
+        {
+            return;
+        }
         System.out.println("\nQuick order created successfully!");
         System.out.println(order.toString());
     }
@@ -416,17 +412,102 @@ public class OrderManager
      */
     private void deliverOrder()
     {
-        if (orderQueue.isEmpty())
+        Order deliveredOrder = orderService.deliverNextOrder();
+        if (deliveredOrder == null)
         {
-            System.out.println("No orders to deliver.");
+            System.out.println(orderService.isQueueEmpty() ? "No orders to deliver." : "No orders are ready yet.");
             return;
         }
 
-        Order deliveredOrder = orderQueue.poll();
         System.out.println("\n=== Order Delivered ===");
         System.out.println(deliveredOrder.toString());
+    }
+
+    /**
+     * Hands several ready orders to a driver at once, grouped by delivery address
+     */
+    private void dispatchDeliveryRun()
+    {
+        System.out.print("Enter the number of orders for this run (1-" + MAX_DELIVERY_RUN_SIZE + "): ");
+        int runSize = getValidatedMenuChoice(1, MAX_DELIVERY_RUN_SIZE);
+
+        Map<String, List<Order>> deliveryGroups = orderService.deliverOrders(runSize);
+        if (deliveryGroups.isEmpty())
+        {
+            System.out.println(orderService.isQueueEmpty() ? "No orders to deliver." : "No orders are ready yet.");
+            return;
+        }
+
+        System.out.println("\n=== Delivery Run ===");
+        int stopNumber = 1;
+        int orderCount = 0;
+        for (List<Order> stopOrders : deliveryGroups.values())
+        {
+            System.out.println("\nStop " + stopNumber++ + ": " + stopOrders.get(0).getDeliveryAddress()
+                    + " (" + stopOrders.size() + " order" + (stopOrders.size() == 1 ? "" : "s") + ")");
+            for (Order order : stopOrders)
+            {
+                System.out.println(order.toString());
+                System.out.println("-".repeat(30));
+            }
+            orderCount += stopOrders.size();
+        }
+        System.out.println("\nDispatched " + orderCount + " orders to " + deliveryGroups.size() + " addresses.");
+    }
+
+    /**
+     * Displays the order history of a customer a page at a time, live orders first and then archived orders on request
+     * @param customerName the lowercase customer name
+     */
+    private void displayCustomerHistory(String customerName)
+    {
+        if (orderService.hasCustomerHistory(customerName))
+        {
+            OrderPage page;
+            try
+            {
+                page = orderService.getCustomerHistoryPage(customerName, null, ORDER_PAGE_SIZE);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Warning: Could not load order history for customer '" + customerName + "'.");
+                return;
+            }
+
+            System.out.println("\n=== Order History for " + customerName + " ===");
+            System.out.println("Total orders: " + (page.getTotalCount() + orderService.getArchivedOrderCount(customerName)));
+
+            int orderNumber = 1;
+            while (true)
+            {
+                for (Order order : page.getOrders())
+                {
+                    System.out.println("\nHistorical Order #" + orderNumber++);
+                    System.out.println(order.toString());
+                    System.out.println("-".repeat(30));
+                }
+                if (!page.hasNextPage() || !showNextPage(orderNumber - 1, page.getTotalCount()))
+                {
+                    break;
+                }
 
-        saveOrdersToFile();
+                try
+                {
+                    page = orderService.getCustomerHistoryPage(customerName, page.getNextPageToken(), ORDER_PAGE_SIZE);
+                }
+                catch (IOException e)
+                {
+                    System.out.println("Warning: Could not load order history for customer '" + customerName + "'.");
+                    break;
+                }
+            }
+
+            viewArchivedHistory(customerName);
+        }
+        else
+        {
+            System.out.println("No order history found for customer '" + customerName + "'.");
+        }
     }
 
     /**
@@ -442,7 +523,8 @@ public class OrderManager
     }
 
     /**
-     * Displays the main menu
+     * Displays the main menu. Dispatching a delivery run is listed with delivering an order, keeping
+     * the number it was added under so Exit stays at 8.
      */
     private void displayMainMenu()
     {
@@ -450,6 +532,7 @@ public class OrderManager
         System.out.println("1. Enter the details of a customer order");
         System.out.println("2. Quick order from menu");
         System.out.println("3. Deliver an order");
+        System.out.println("9. Dispatch a delivery run");
         System.out.println("4. Print out details of all orders");
         System.out.println("5. Search orders by customer name");
         System.out.println("6. View customer order history");
@@ -494,16 +577,16 @@ public class OrderManager
      */
     private void filterOrdersByMealType()
     {
-        if (orderQueue.isEmpty())
+        if (orderService.isQueueEmpty())
         {
             System.out.println("No orders in the system.");
             return;
         }
 
         System.out.println("\nSelect meal type to filter:");
-        System.out.println("1. Meat");
-        System.out.println("2. Vegetarian");
-        System.out.println("3. Vegan");
+        System.out.println("1. Meat (" + orderService.countOrdersByMealType(MealType.MEAT) + " queued)");
+        System.out.println("2. Vegetarian (" + orderService.countOrdersByMealType(MealType.VEGETARIAN) + " queued)");
+        System.out.println("3. Vegan (" + orderService.countOrdersByMealType(MealType.VEGAN) + " queued)");
 
         int choice = getValidatedMenuChoice(1, 3);
         MealType selectedType;
@@ -524,18 +607,15 @@ public class OrderManager
         }
 
         System.out.println("\n=== " + selectedType.toString() + " Orders ===");
-        int count = 0;
-        for (Order order : orderQueue)
+        List<Order> matchingOrders = orderService.filterOrdersByMealType(selectedType);
+        for (int i = 0; i < matchingOrders.size(); i++)
         {
-            if (order.getMealType() == selectedType)
-            {
-                System.out.println("\nOrder " + (++count));
-                System.out.println(order.toString());
-                System.out.println("-".repeat(30));
-            }
+            System.out.println("\nOrder " + (i + 1));
+            System.out.println(matchingOrders.get(i).toString());
+            System.out.println("-".repeat(30));
         }
 
-        if (count == 0)
+        if (matchingOrders.isEmpty())
         {
             System.out.println("No orders found for " + selectedType.toString().toLowerCase() + " meal type.");
         }
@@ -648,51 +728,36 @@ public class OrderManager
     }
 
     /**
-     * Loads customer history from file
-     */
-    @SuppressWarnings("unchecked")
-    private void loadCustomerHistoryFromFile()
-    {
-        try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(CUSTOMERS_FILE)))
-        {
-            customerHistory = (Map<String, List<Order>>) objectInputStream.readObject();
-        }
-        catch (FileNotFoundException e)
-        {
-            // File doesn't exist yet, start with empty history
-        }
-        catch (IOException | ClassNotFoundException e)
-        {
-            System.out.println("Warning: Could not load customer history.");
-        }
-    }
-
-    /**
-     * Loads orders from file
+     * Places an order with the order service, telling the user when it is turned away at peak load
+     * @param order the order to place
+     * @return true if the order was placed
      */
-    @SuppressWarnings("unchecked")
-    private void loadOrdersFromFile()
+    private boolean placeOrder(Order order)
     {
-        try (ObjectInputStream objectInputStream = new ObjectInputStream(new FileInputStream(ORDERS_FILE)))
-        {
-            orderQueue = (Queue<Order>) objectInputStream.readObject();
-        }
-        catch (FileNotFoundException e)
+        try
         {
-            // File doesn't exist yet, start with empty queue
+            orderService.placeOrder(order);
+            return true;
         }
-        catch (IOException | ClassNotFoundException e)
+        catch (OrderRejectedException e)
         {
-            System.out.println("Warning: Could not load previous orders.");
+            System.out.println("\nSorry, the order could not be taken: " + e.getMessage() + ".");
+            if (e.getEstimatedWaitMillis() >= 0)
+            {
+                System.out.println("Please try again in about " + Math.max(1, (e.getEstimatedWaitMillis() + 999) / 1000)
+                        + " seconds.");
+            }
+            return false;
         }
     }
 
     /**
-     * Prints all orders in the queue
+     * Prints the orders in the queue a page at a time, rendering each page only when it is asked for
      */
     private void printAllOrders()
     {
-        if (orderQueue.isEmpty())
+        OrderPage page = orderService.getPendingOrdersPage(null, ORDER_PAGE_SIZE);
+        if (page.getOrders().isEmpty())
         {
             System.out.println("No orders in the system.");
             return;
@@ -700,14 +765,22 @@ public class OrderManager
 
         System.out.println("\n=== All Current Orders ===");
         int orderNumber = 1;
-        for (Order order : orderQueue)
+        while (true)
         {
-            System.out.println("\nOrder " + orderNumber++);
-            System.out.println(order.toString());
-            System.out.println("-".repeat(30));
+            for (Order order : page.getOrders())
+            {
+                System.out.println("\nOrder " + orderNumber++);
+                System.out.println(order.toString());
+                System.out.println("-".repeat(30));
+            }
+            if (!page.hasNextPage() || !showNextPage(orderNumber - 1, page.getTotalCount()))
+            {
+                break;
+            }
+            page = orderService.getPendingOrdersPage(page.getNextPageToken(), ORDER_PAGE_SIZE);
         }
 
-        System.out.println("\nTotal orders waiting: " + orderQueue.size());
+        System.out.println("\nTotal orders waiting: " + page.getTotalCount());
     }
 
     /**
@@ -720,7 +793,7 @@ public class OrderManager
         while (true)
         {
             displayMainMenu();
-            int choice = getValidatedMenuChoice(1, 8);
+            int choice = getValidatedMenuChoice(1, 9);
 
             switch (choice)
             {
@@ -746,104 +819,140 @@ public class OrderManager
                     filterOrdersByMealType();
                     break;
                 case 8:
-                    saveOrdersToFile();
-                    saveCustomerHistoryToFile();
+                    orderService.shutdown();
                     System.out.println("Thank you for using the Order Management System!");
                     return;
+                case 9:
+                    dispatchDeliveryRun();
+                    break;
             }
         }
     }
 
     /**
-     * Saves customer history to file
+     * Searches orders by customer name
      */
-    private void saveCustomerHistoryToFile()
+    private void searchOrdersByCustomer()
     {
-        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(CUSTOMERS_FILE)))
+        if (orderService.isQueueEmpty())
         {
-            objectOutputStream.writeObject(customerHistory);
+            System.out.println("No orders in the system.");
+            return;
         }
-        catch (IOException e)
+
+        String searchName = getValidatedInput("Enter customer name to search: ", "Customer name").toLowerCase();
+
+        System.out.println("\n=== Search Results for '" + searchName + "' ===");
+        List<Order> matchingOrders = orderService.searchOrdersByCustomer(searchName);
+        for (int i = 0; i < matchingOrders.size(); i++)
         {
-            System.out.println("Warning: Could not save customer history.");
+            System.out.println("\nOrder " + (i + 1));
+            System.out.println(matchingOrders.get(i).toString());
+            System.out.println("-".repeat(30));
+        }
+
+        if (matchingOrders.isEmpty())
+        {
+            System.out.println("No orders found for customer name containing '" + searchName + "'.");
         }
     }
 
     /**
-     * Saves orders to file
+     * Asks whether to show the next page of a listing
+     * @param shownCount the number of orders shown so far
+     * @param totalCount the number of orders in the listing
+     * @return true if the next page was asked for
      */
-    private void saveOrdersToFile()
+    private boolean showNextPage(int shownCount, int totalCount)
     {
-        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(new FileOutputStream(ORDERS_FILE)))
-        {
-            objectOutputStream.writeObject(orderQueue);
-        }
-        catch (IOException e)
-        {
-            System.out.println("Warning: Could not save orders.");
-        }
+        System.out.print("\nShown " + shownCount + " of " + totalCount + " orders. Show the next page? (y/n): ");
+        String response = scanner.nextLine().trim().toLowerCase();
+        return response.equals("y") || response.equals("yes");
     }
 
     /**
-     * Searches orders by customer name
+     * Offers to show a customer's archived orders a page at a time, which are only read from the archive if asked for
+     * @param customerName the lowercase customer name
      */
-    private void searchOrdersByCustomer()
+    private void viewArchivedHistory(String customerName)
     {
-        if (orderQueue.isEmpty())
+        int archivedCount = orderService.getArchivedOrderCount(customerName);
+        if (archivedCount == 0)
         {
-            System.out.println("No orders in the system.");
             return;
         }
 
-        String searchName = getValidatedInput("Enter customer name to search: ", "Customer name").toLowerCase();
+        System.out.print(archivedCount + " older orders are archived. Show them? (y/n): ");
+        String response = scanner.nextLine().trim().toLowerCase();
+        if (!response.equals("y") && !response.equals("yes"))
+        {
+            return;
+        }
 
-        System.out.println("\n=== Search Results for '" + searchName + "' ===");
-        int count = 0;
-        for (Order order : orderQueue)
+        System.out.println("\n=== Archived Orders for " + customerName + " ===");
+        String pageToken = null;
+        int orderNumber = 1;
+        do
         {
-            if (order.getCustomerName().toLowerCase().contains(searchName))
+            OrderPage page;
+            try
+            {
+                page = orderService.getArchivedHistoryPage(customerName, pageToken, ORDER_PAGE_SIZE);
+            }
+            catch (IOException e)
+            {
+                System.out.println("Warning: Could not load archived orders for customer '" + customerName + "'.");
+                return;
+            }
+
+            for (Order order : page.getOrders())
             {
-                System.out.println("\nOrder " + (++count));
+                System.out.println("\nArchived Order #" + orderNumber++);
                 System.out.println(order.toString());
                 System.out.println("-".repeat(30));
             }
+            pageToken = page.hasNextPage() && showNextPage(orderNumber - 1, page.getTotalCount())
+                    ? page.getNextPageToken() : null;
         }
-
-        if (count == 0)
-        {
-            System.out.println("No orders found for customer name containing '" + searchName + "'.");
-        }
+        while (pageToken != null);
     }
 
     /**
-     * Views customer order history
+     * Views customer order history, looked up by customer name or by the contact number the customer quotes
      */
     private void viewCustomerHistory()
     {
-        if (customerHistory.isEmpty())
+        if (!orderService.hasCustomerHistory())
         {
             System.out.println("No customer history available.");
             return;
         }
 
-        String customerName = getValidatedInput("Enter customer name: ", "Customer name").toLowerCase();
-
-        if (customerHistory.containsKey(customerName))
+        String lookup = getValidatedInput("Enter customer name or contact number: ", "Customer name or contact number");
+        if (!lookup.matches("\\d{8,15}"))
         {
-            List<Order> history = customerHistory.get(customerName);
-            System.out.println("\n=== Order History for " + customerName + " ===");
-            System.out.println("Total orders: " + history.size());
+            displayCustomerHistory(lookup.toLowerCase());
+            return;
+        }
 
-            for (int i = 0; i < history.size(); i++)
-            {
-                System.out.println("\nHistorical Order #" + (i + 1));
-                System.out.println(history.get(i).toString());
-                System.out.println("-".repeat(30));
-            }
+        List<String> customerNames;
+        try
+        {
+            customerNames = orderService.findCustomersByContactNumber(lookup);
         }
-        else
+        catch (IOException e)
         {
-            System.out.println("No order history found for customer '" + customerName + "'.");
+            System.out.println("Warning: Could not look up contact number " + lookup + ".");
+            return;
+        }
+        if (customerNames.isEmpty())
+        {
+            System.out.println("No order history found for contact number " + lookup + ".");
+            return;
+        }
+        for (String customerName : customerNames)
+        {
+            displayCustomerHistory(customerName);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.restaurant.orderManagement.service;
+
+/**
+ * Thrown when an order is turned away by admission control because the queue is full or
+ * orders are arriving faster than the configured intake rate
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class OrderRejectedException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final long estimatedWaitMillis;
+
+    /**
+     * Constructor for OrderRejectedException
+     * @param message why the order was rejected
+     * @param estimatedWaitMillis how long until an order would likely be accepted, or -1 if unknown
+     */
+    public OrderRejectedException(String message, long estimatedWaitMillis)
+    {
+        super(message);
+        this.estimatedWaitMillis = estimatedWaitMillis;
+    }
+
+    /**
+     * Gets how long the caller should wait before trying again
+     * @return the estimated wait in milliseconds, or -1 if unknown
+     */
+    public long getEstimatedWaitMillis()
+    {
+        return estimatedWaitMillis;
+    }
+}
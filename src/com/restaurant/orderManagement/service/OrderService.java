@@ -0,0 +1,251 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Order;
+import com.restaurant.orderManagement.model.entity.OrderEvent;
+import com.restaurant.orderManagement.model.entity.OrderPage;
+import com.restaurant.orderManagement.model.enums.KitchenStation;
+import com.restaurant.orderManagement.model.enums.MealType;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * Headless interface to the order queue and customer history, used by the console
+ * and by any other client that places, delivers or looks up orders
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public interface OrderService
+{
+    /**
+     * Removes the next order the kitchen has finished preparing from the queue and records its delivery
+     * @return the delivered order, or null if no order is ready
+     */
+    Order deliverNextOrder();
+
+    /**
+     * Removes up to a given number of ready orders from the queue in one step for a single delivery run,
+     * recording their delivery together
+     * @param maxOrders the most orders the run can take
+     * @return the delivered orders grouped by normalised delivery address, in the order the groups
+     *         became ready, empty if no order is ready
+     * @throws IllegalArgumentException if maxOrders is less than 1
+     */
+    Map<String, List<Order>> deliverOrders(int maxOrders);
+
+    /**
+     * Counts the queued orders of a given meal type without visiting them
+     * @param mealType the meal type to count
+     * @return the number of queued orders of that meal type
+     */
+    int countOrdersByMealType(MealType mealType);
+
+    /**
+     * Counts the orders placed in a time range, live or archived, without reading any of them
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the number of orders placed in the range
+     * @throws IOException if the order time index could not be loaded
+     * @throws IllegalArgumentException if the range ends before it starts
+     */
+    int countOrdersPlacedBetween(LocalDateTime from, LocalDateTime to) throws IOException;
+
+    /**
+     * Counts the food items waiting for a kitchen station, not yet started
+     * @param station the kitchen station
+     * @return the number of food items waiting for it
+     */
+    long countWaitingKitchenItems(KitchenStation station);
+
+    /**
+     * Finds the queued orders of a given meal type
+     * @param mealType the meal type to match
+     * @return the matching orders, head of the queue first
+     */
+    List<Order> filterOrdersByMealType(MealType mealType);
+
+    /**
+     * Finds the customers who have ordered with a contact number, so a customer who rings in can be
+     * found by the number they quote
+     * @param contactNumber the contact number, 8-15 digits
+     * @return the lowercase names of the customers whose history holds an order with that number
+     * @throws IOException if the contact number index could not be loaded
+     */
+    List<String> findCustomersByContactNumber(String contactNumber) throws IOException;
+
+    /**
+     * Gets the number of orders admitted since startup
+     * @return the accepted order count
+     */
+    long getAcceptedOrderCount();
+
+    /**
+     * Gets a customer's archived orders, read from the archive on every call
+     * @param customerName the customer name, in any case
+     * @return the archived orders, oldest first, empty if there are none
+     * @throws IOException if the archive could not be read
+     */
+    List<Order> getArchivedHistory(String customerName) throws IOException;
+
+    /**
+     * Gets one page of a customer's archived orders, reading only the part of the archive that holds the page.
+     * Archived orders are only ever added after the existing ones, so a token stays valid as more are archived.
+     * @param customerName the customer name, in any case
+     * @param pageToken the token of the page to read, from the previous page, or null for the first page
+     * @param pageSize the most orders on the page
+     * @return the page of orders, oldest first
+     * @throws IOException if the archive could not be read
+     * @throws IllegalArgumentException if the page token is not one this service issued or the page size is not positive
+     */
+    OrderPage getArchivedHistoryPage(String customerName, String pageToken, int pageSize) throws IOException;
+
+    /**
+     * Gets the number of archived orders of a customer without reading them
+     * @param customerName the customer name, in any case
+     * @return the archived order count
+     */
+    int getArchivedOrderCount(String customerName);
+
+    /**
+     * Gets the number of order events missed by subscribers that fell behind
+     * @return the dropped event count
+     */
+    long getDroppedEventCount();
+
+    /**
+     * Gets the number of orders admitted and not yet delivered, which admission control holds to the
+     * maximum queue depth
+     * @return the in-flight order count
+     */
+    int getInFlightOrderCount();
+
+    /**
+     * Gets a customer's recent, unarchived orders
+     * @param customerName the customer name, in any case
+     * @return the customer's orders, oldest first, empty if there are none
+     * @throws IOException if the customer's history could not be read
+     */
+    List<Order> getCustomerHistory(String customerName) throws IOException;
+
+    /**
+     * Gets one page of a customer's recent, unarchived orders. A token stays valid while older
+     * orders are archived, and the next page then starts with the first order not yet shown.
+     * @param customerName the customer name, in any case
+     * @param pageToken the token of the page to read, from the previous page, or null for the first page
+     * @param pageSize the most orders on the page
+     * @return the page of orders, oldest first
+     * @throws IOException if the customer's history could not be read
+     * @throws IllegalArgumentException if the page token is not one this service issued or the page size is not positive
+     */
+    OrderPage getCustomerHistoryPage(String customerName, String pageToken, int pageSize) throws IOException;
+
+    /**
+     * Gets the stream of order lifecycle events: created when an order is queued, ready when the
+     * kitchen has prepared it and delivered when it leaves the queue. A subscriber that does not keep
+     * up misses events rather than slowing down intake.
+     * @return the event publisher
+     */
+    Flow.Publisher<OrderEvent> getOrderEvents();
+
+    /**
+     * Gets the orders placed in a time range, live or archived
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the orders placed in the range, oldest first
+     * @throws IOException if the history could not be read
+     * @throws IllegalArgumentException if the range ends before it starts
+     */
+    List<Order> getOrdersPlacedBetween(LocalDateTime from, LocalDateTime to) throws IOException;
+
+    /**
+     * Gets every queued order
+     * @return a copy of the queue, head first
+     */
+    List<Order> getPendingOrders();
+
+    /**
+     * Gets one page of the queued orders. Orders delivered since the previous page are skipped and
+     * orders queued since then come at the end, so no order is listed twice.
+     * @param pageToken the token of the page to read, from the previous page, or null for the first page
+     * @param pageSize the most orders on the page
+     * @return the page of orders, head of the queue first
+     * @throws IllegalArgumentException if the page token is not one this service issued or the page size is not positive
+     */
+    OrderPage getPendingOrdersPage(String pageToken, int pageSize);
+
+    /**
+     * Gets how long loading the stored orders took at startup
+     * @return the recovery time in milliseconds
+     */
+    long getRecoveryTimeMillis();
+
+    /**
+     * Gets the number of orders turned away by admission control since startup
+     * @return the rejected order count
+     */
+    long getRejectedOrderCount();
+
+    /**
+     * Checks whether any customer has order history
+     * @return true if at least one order has ever been placed
+     */
+    boolean hasCustomerHistory();
+
+    /**
+     * Checks whether a customer has order history
+     * @param customerName the customer name, in any case
+     * @return true if the customer has placed at least one order
+     */
+    boolean hasCustomerHistory(String customerName);
+
+    /**
+     * Checks whether the queue is empty
+     * @return true if there are no orders waiting
+     */
+    boolean isQueueEmpty();
+
+    /**
+     * Adds a new order to the queue and the customer's history, waiting until it is queued
+     * @param order the order to place
+     * @throws IllegalArgumentException if the order has no customer name, no order time, no food items
+     *         or a food item the kitchen cannot prepare
+     * @throws OrderRejectedException if the queue is full or orders are arriving too fast
+     */
+    void placeOrder(Order order);
+
+    /**
+     * Adds a batch of new orders, such as a partner system's pre-orders, to the queue and the customers'
+     * histories in one pass and persists them together. The batch is placed whole or not at all.
+     * @param orders the orders to place, in queue order
+     * @throws IllegalArgumentException if any order has no customer name, no order time, no food items
+     *         or a food item the kitchen cannot prepare
+     * @throws OrderRejectedException if the batch would overfill the queue
+     */
+    void placeOrders(Collection<Order> orders);
+
+    /**
+     * Submits a new order for placement without waiting for it to be queued
+     * @param order the order to place
+     * @return a future completed with the order once it is queued, or completed exceptionally with an
+     *         IllegalArgumentException if the order has no customer name, no order time, no food items
+     *         or a food item the kitchen cannot prepare
+     * @throws OrderRejectedException if the queue is full or orders are arriving too fast
+     */
+    CompletableFuture<Order> submitOrder(Order order);
+
+    /**
+     * Finds the queued orders whose customer name contains the given text, ignoring case
+     * @param customerName the text to search for
+     * @return the matching orders, head of the queue first
+     */
+    List<Order> searchOrdersByCustomer(String customerName);
+
+    /**
+     * Writes everything still pending to disk and stops the background threads
+     */
+    void shutdown();
+}
@@ -0,0 +1,1119 @@
+package com.restaurant.orderManagement.service;
+
+import com.restaurant.orderManagement.model.entity.Food;
+import com.restaurant.orderManagement.model.entity.Order;
+import com.restaurant.orderManagement.model.entity.OrderEvent;
+import com.restaurant.orderManagement.model.entity.OrderPage;
+import com.restaurant.orderManagement.model.enums.KitchenStation;
+import com.restaurant.orderManagement.model.enums.MealType;
+import com.restaurant.orderManagement.model.enums.OrderEventType;
+import com.restaurant.orderManagement.persistence.CheckpointSource;
+import com.restaurant.orderManagement.persistence.Checkpointer;
+import com.restaurant.orderManagement.persistence.CustomerHistoryStore;
+import com.restaurant.orderManagement.persistence.HistoryArchiver;
+import com.restaurant.orderManagement.persistence.JournalReplayListener;
+import com.restaurant.orderManagement.persistence.JournalWriter;
+import com.restaurant.orderManagement.persistence.LegacyMigrator;
+import com.restaurant.orderManagement.persistence.OrderJournal;
+import com.restaurant.orderManagement.persistence.SnapshotStore;
+import java.io.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Order service backed by the in-memory queue, the order journal and snapshot, and the
+ * customer history store. Recovers the previous session's orders when created. The queue is
+ * keyed by order id, which follows the order orders were placed in, so a delivered order is
+ * removed by its id without scanning the orders ahead of it.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public class RestaurantOrderService implements OrderService
+{
+    public static final String MAX_QUEUE_DEPTH_PROPERTY = "restaurant.maxQueueDepth";
+    public static final String MAX_ORDERS_PER_SECOND_PROPERTY = "restaurant.maxOrdersPerSecond";
+    public static final String ITEM_PREPARATION_MILLIS_PROPERTY = "restaurant.itemPreparationMillis";
+    public static final int DEFAULT_MAX_QUEUE_DEPTH = 10000;
+    public static final int DEFAULT_MAX_ORDERS_PER_SECOND = 1000;
+    public static final int DEFAULT_ITEM_PREPARATION_MILLIS = 0;
+    private static final String ORDERS_FILE = "orders.dat";
+    private static final String CUSTOMERS_DIRECTORY = "customers";
+    private static final String LEGACY_CUSTOMERS_FILE = "customers.dat";
+    private static final String JOURNAL_FILE = "orders.journal";
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 30;
+    private static final long JOURNAL_MAX_DELAY_MILLIS = 20;
+    private static final long HISTORY_ARCHIVE_AGE_DAYS = 90;
+    private static final long HISTORY_ARCHIVE_INTERVAL_HOURS = 24;
+    private static final int OVEN_COUNT = 2;
+    private static final int STOVE_COUNT = 2;
+    private static final int INTAKE_RING_SIZE = 1024;
+    private static final int EVENT_BUFFER_SIZE = 1024;
+    private static final Pattern ADDRESS_PUNCTUATION = Pattern.compile("[^\\p{L}\\p{N}\\s]");
+    private static final Pattern WHITESPACE_RUN = Pattern.compile("\\s+");
+
+    private ConcurrentNavigableMap<Long, Order> orderQueue;
+    private Queue<Order> readyOrders;
+    private CustomerHistoryStore customerHistory;
+    private final ReadWriteLock stateLock;
+    private final AtomicLong nextOrderId;
+    private OrderJournal orderJournal;
+    private JournalWriter journalWriter;
+    private SnapshotStore snapshotStore;
+    private Checkpointer checkpointer;
+    private HistoryArchiver historyArchiver;
+    private KitchenScheduler kitchenScheduler;
+    private OrderIntakePipeline intakePipeline;
+    private AdmissionController admissionController;
+    private OrderEventPublisher orderEvents;
+    private CustomerNameIndex customerNameIndex;
+    private MealTypeIndex mealTypeIndex;
+    private long recoveryTimeMillis;
+
+    /**
+     * Default constructor for RestaurantOrderService, with the admission limits given by the
+     * restaurant.maxQueueDepth and restaurant.maxOrdersPerSecond system properties, or the defaults
+     * if they are not set
+     */
+    public RestaurantOrderService()
+    {
+        this(readSetting(MAX_QUEUE_DEPTH_PROPERTY, DEFAULT_MAX_QUEUE_DEPTH, 1),
+                readSetting(MAX_ORDERS_PER_SECOND_PROPERTY, DEFAULT_MAX_ORDERS_PER_SECOND, 0));
+    }
+
+    /**
+     * Constructor for RestaurantOrderService with admission limits
+     * @param maxQueueDepth the most orders that can be placed and not yet delivered at once
+     * @param maxOrdersPerSecond the sustained intake rate limit, 0 for no limit
+     */
+    public RestaurantOrderService(int maxQueueDepth, int maxOrdersPerSecond)
+    {
+        this.orderQueue = new ConcurrentSkipListMap<Long, Order>();
+        this.readyOrders = new ConcurrentLinkedQueue<Order>();
+        this.customerHistory = new CustomerHistoryStore(CUSTOMERS_DIRECTORY);
+        this.stateLock = new ReentrantReadWriteLock();
+        this.nextOrderId = new AtomicLong(1);
+        this.customerNameIndex = new CustomerNameIndex();
+        this.mealTypeIndex = new MealTypeIndex();
+        this.orderJournal = new OrderJournal(JOURNAL_FILE);
+        this.snapshotStore = new SnapshotStore(ORDERS_FILE);
+
+        // The history index loads alongside the queue; customer orders are only read on lookup
+        long recoveryStart = System.nanoTime();
+        migrateLegacyData();
+        CompletableFuture<Void> historyLoad = CompletableFuture.runAsync(this::loadCustomerHistoryFromFile);
+        List<Order> loadedOrders = new ArrayList<Order>();
+        long queueGeneration = loadOrdersFromFile(loadedOrders);
+        historyLoad.join();
+        int replayedRecords = replayJournal(queueGeneration, loadedOrders);
+        this.recoveryTimeMillis = (System.nanoTime() - recoveryStart) / 1_000_000;
+        reportRecovery(replayedRecords);
+        this.admissionController = new AdmissionController(maxQueueDepth, maxOrdersPerSecond, orderQueue.size());
+        this.orderEvents = new OrderEventPublisher(EVENT_BUFFER_SIZE);
+
+        this.journalWriter = new JournalWriter(orderJournal, customerHistory, JOURNAL_MAX_DELAY_MILLIS);
+        journalWriter.start();
+        this.checkpointer = new Checkpointer(orderJournal, journalWriter, snapshotStore, new CheckpointSource()
+        {
+            @Override
+            public List<Order> copyOrderQueue()
+            {
+                return new ArrayList<Order>(orderQueue.values());
+            }
+        }, stateLock, CHECKPOINT_INTERVAL_SECONDS);
+        checkpointer.start();
+        this.historyArchiver = new HistoryArchiver(customerHistory, HISTORY_ARCHIVE_AGE_DAYS,
+                HISTORY_ARCHIVE_INTERVAL_HOURS);
+        historyArchiver.start();
+
+        // Preparation progress is not persisted, so recovered orders are prepared again
+        this.kitchenScheduler = new KitchenScheduler(OVEN_COUNT, STOVE_COUNT,
+                readSetting(ITEM_PREPARATION_MILLIS_PROPERTY, DEFAULT_ITEM_PREPARATION_MILLIS, 0));
+        for (Order order : orderQueue.values())
+        {
+            sendToKitchen(order);
+        }
+
+        this.intakePipeline = new OrderIntakePipeline(INTAKE_RING_SIZE);
+        intakePipeline.addStage("validate", this::validateOrder);
+        intakePipeline.addStage("price", this::priceOrder);
+        intakePipeline.addStage("enqueue", this::enqueueOrder);
+        intakePipeline.addStage("index", this::recordHistory);
+        intakePipeline.addStage("persist", this::persistOrder);
+        intakePipeline.start();
+    }
+
+    /**
+     * Counts the queued orders of a given meal type from the meal type index
+     * @param mealType the meal type to count
+     * @return the number of queued orders of that meal type
+     */
+    @Override
+    public int countOrdersByMealType(MealType mealType)
+    {
+        return mealTypeIndex.getCount(mealType);
+    }
+
+    /**
+     * Counts the orders placed in a time range from the order time index, without reading any history
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the number of orders placed in the range
+     * @throws IOException if the order time index could not be loaded
+     * @throws IllegalArgumentException if the range ends before it starts
+     */
+    @Override
+    public int countOrdersPlacedBetween(LocalDateTime from, LocalDateTime to) throws IOException
+    {
+        validateTimeRange(from, to);
+        return customerHistory.countOrdersBetween(from, to);
+    }
+
+    /**
+     * Counts the food items waiting for a kitchen station from the station's work queue
+     * @param station the kitchen station
+     * @return the number of food items waiting for it
+     */
+    @Override
+    public long countWaitingKitchenItems(KitchenStation station)
+    {
+        return kitchenScheduler.getWaitingItemCount(station);
+    }
+
+    /**
+     * Removes the order the kitchen finished first from the queue and records its delivery.
+     * Safe to call from several terminals at once; each order is handed to exactly one caller.
+     * The queue is keyed by order id, so the order is removed without scanning it.
+     * @return the delivered order, or null if no order is ready
+     */
+    @Override
+    public Order deliverNextOrder()
+    {
+        Order deliveredOrder;
+        stateLock.readLock().lock();
+        try
+        {
+            deliveredOrder = readyOrders.poll();
+            if (deliveredOrder != null)
+            {
+                orderQueue.remove(deliveredOrder.getOrderId());
+                customerNameIndex.remove(deliveredOrder);
+                mealTypeIndex.remove(deliveredOrder);
+                journalWriter.enqueueDeliver(deliveredOrder.getOrderId());
+                admissionController.ordersDelivered(1);
+            }
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+
+        if (deliveredOrder != null)
+        {
+            orderEvents.publish(OrderEventType.DELIVERED, deliveredOrder);
+        }
+        return deliveredOrder;
+    }
+
+    /**
+     * Removes up to a given number of ready orders from the queue for a single delivery run.
+     * The whole run is written to the journal as one record, and each order is removed from the
+     * queue by its id, however many orders the queue holds.
+     * @param maxOrders the most orders the run can take
+     * @return the delivered orders grouped by normalised delivery address, in the order the groups
+     *         became ready, empty if no order is ready
+     * @throws IllegalArgumentException if maxOrders is less than 1
+     */
+    @Override
+    public Map<String, List<Order>> deliverOrders(int maxOrders)
+    {
+        if (maxOrders < 1)
+        {
+            throw new IllegalArgumentException("A delivery run must take at least one order");
+        }
+
+        Map<String, List<Order>> deliveryGroups = new LinkedHashMap<String, List<Order>>();
+        stateLock.readLock().lock();
+        try
+        {
+            Set<Order> deliveredOrders = Collections.newSetFromMap(new IdentityHashMap<Order, Boolean>());
+            Order readyOrder;
+            while (deliveredOrders.size() < maxOrders && (readyOrder = readyOrders.poll()) != null)
+            {
+                deliveredOrders.add(readyOrder);
+                deliveryGroups.computeIfAbsent(normalizeAddress(readyOrder.getDeliveryAddress()),
+                        address -> new ArrayList<Order>()).add(readyOrder);
+            }
+            if (deliveredOrders.isEmpty())
+            {
+                return deliveryGroups;
+            }
+
+            customerNameIndex.removeAll(deliveredOrders);
+            mealTypeIndex.removeAll(deliveredOrders);
+            long[] orderIds = new long[deliveredOrders.size()];
+            int index = 0;
+            for (Order order : deliveredOrders)
+            {
+                orderQueue.remove(order.getOrderId());
+                orderIds[index++] = order.getOrderId();
+            }
+            journalWriter.enqueueDeliverBatch(orderIds);
+            admissionController.ordersDelivered(orderIds.length);
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+
+        for (List<Order> deliveryGroup : deliveryGroups.values())
+        {
+            for (Order order : deliveryGroup)
+            {
+                orderEvents.publish(OrderEventType.DELIVERED, order);
+            }
+        }
+        return deliveryGroups;
+    }
+
+    /**
+     * Intake stage that assigns the order its id and adds it to the queue. Mutators only share the
+     * read side of the state lock, which a checkpoint takes exclusively to capture the queue.
+     * @param order the validated, priced order
+     */
+    private void enqueueOrder(Order order)
+    {
+        stateLock.readLock().lock();
+        try
+        {
+            order.setOrderId(nextOrderId.getAndIncrement());
+            orderQueue.put(order.getOrderId(), order);
+            customerNameIndex.add(order);
+            mealTypeIndex.add(order);
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the queued orders of a given meal type from the meal type index, visiting only those orders
+     * @param mealType the meal type to match
+     * @return the matching orders, head of the queue first
+     */
+    @Override
+    public List<Order> filterOrdersByMealType(MealType mealType)
+    {
+        return mealTypeIndex.getOrders(mealType);
+    }
+
+    /**
+     * Finds the customers who have ordered with a contact number from the contact number index,
+     * without reading any history
+     * @param contactNumber the contact number, 8-15 digits
+     * @return the lowercase names of the customers whose history holds an order with that number,
+     *         empty if there are none or the number is not valid
+     * @throws IOException if the contact number index could not be loaded
+     */
+    @Override
+    public List<String> findCustomersByContactNumber(String contactNumber) throws IOException
+    {
+        return customerHistory.findCustomersByContactNumber(contactNumber);
+    }
+
+    /**
+     * Checks an order for the problems that stop it being placed. Everything the stages after
+     * validation rely on is checked here, so an order that passes is never turned away once queued.
+     * @param order the submitted order
+     * @return what is wrong with the order, or null if it can be placed
+     */
+    private static String findProblem(Order order)
+    {
+        if (order.getCustomerName() == null || order.getCustomerName().trim().isEmpty())
+        {
+            return "Customer name cannot be empty";
+        }
+        if (order.getOrderTime() == null)
+        {
+            return "Order time cannot be empty";
+        }
+        if (order.getFoodItems().isEmpty())
+        {
+            return "Order must contain at least one food item";
+        }
+        for (Food foodItem : order.getFoodItems())
+        {
+            if (!KitchenScheduler.hasStation(foodItem))
+            {
+                return "The kitchen cannot prepare " + foodItem;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the number of orders admitted since startup
+     * @return the accepted order count
+     */
+    @Override
+    public long getAcceptedOrderCount()
+    {
+        return admissionController.getAcceptedCount();
+    }
+
+    /**
+     * Gets a customer's archived orders, decompressed from the archive on every call
+     * @param customerName the customer name, in any case
+     * @return the archived orders, oldest first, empty if there are none
+     * @throws IOException if the archive could not be read
+     */
+    @Override
+    public List<Order> getArchivedHistory(String customerName) throws IOException
+    {
+        return customerHistory.getArchivedHistory(customerName.toLowerCase());
+    }
+
+    /**
+     * Gets one page of a customer's archived orders, decompressing only the archived blocks that hold it.
+     * The token is the position after the page among the customer's archived orders.
+     * @param customerName the customer name, in any case
+     * @param pageToken the token of the page to read, from the previous page, or null for the first page
+     * @param pageSize the most orders on the page
+     * @return the page of orders, oldest first
+     * @throws IOException if the archive could not be read
+     * @throws IllegalArgumentException if the page token is not one this service issued or the page size is not positive
+     */
+    @Override
+    public OrderPage getArchivedHistoryPage(String customerName, String pageToken, int pageSize) throws IOException
+    {
+        String name = customerName.toLowerCase();
+        int fromIndex = (int) Math.min(Integer.MAX_VALUE, parsePageToken(pageToken, pageSize));
+        List<Order> orders = customerHistory.getArchivedHistoryPage(name, fromIndex, pageSize);
+        int archivedCount = customerHistory.getArchivedOrderCount(name);
+        int nextIndex = fromIndex + orders.size();
+        return new OrderPage(orders, nextIndex < archivedCount ? String.valueOf(nextIndex) : null, archivedCount);
+    }
+
+    /**
+     * Gets the number of archived orders of a customer from the archive index
+     * @param customerName the customer name, in any case
+     * @return the archived order count
+     */
+    @Override
+    public int getArchivedOrderCount(String customerName)
+    {
+        return customerHistory.getArchivedOrderCount(customerName.toLowerCase());
+    }
+
+    /**
+     * Gets the number of order events missed by subscribers whose buffers were full
+     * @return the dropped event count
+     */
+    @Override
+    public long getDroppedEventCount()
+    {
+        return orderEvents.getDroppedCount();
+    }
+
+    /**
+     * Gets the number of orders admitted and not yet delivered or withdrawn, as counted by admission control
+     * @return the in-flight order count
+     */
+    @Override
+    public int getInFlightOrderCount()
+    {
+        return admissionController.getQueueDepth();
+    }
+
+    /**
+     * Gets a customer's live history, read from the customer's segment on first use
+     * @param customerName the customer name, in any case
+     * @return the customer's orders, oldest first, empty if there are none
+     * @throws IOException if the customer's segment could not be read
+     */
+    @Override
+    public List<Order> getCustomerHistory(String customerName) throws IOException
+    {
+        return customerHistory.getHistory(customerName.toLowerCase());
+    }
+
+    /**
+     * Gets one page of a customer's live history, copying only the orders on the page. The token is the
+     * position after the page counted over the customer's archived and live orders together, which
+     * archiving does not change, so orders archived between pages are skipped rather than shifting the page.
+     * @param customerName the customer name, in any case
+     * @param pageToken the token of the page to read, from the previous page, or null for the first page
+     * @param pageSize the most orders on the page
+     * @return the page of orders, oldest first
+     * @throws IOException if the customer's history could not be read
+     * @throws IllegalArgumentException if the page token is not one this service issued or the page size is not positive
+     */
+    @Override
+    public OrderPage getCustomerHistoryPage(String customerName, String pageToken, int pageSize) throws IOException
+    {
+        String name = customerName.toLowerCase();
+        long position = parsePageToken(pageToken, pageSize);
+        int archivedCount = customerHistory.getArchivedOrderCount(name);
+        int fromIndex = (int) Math.min(Integer.MAX_VALUE, Math.max(0, position - archivedCount));
+
+        List<Order> orders = customerHistory.getHistoryPage(name, fromIndex, pageSize);
+        int historySize = customerHistory.getHistorySize(name);
+        int nextIndex = fromIndex + orders.size();
+        return new OrderPage(orders, nextIndex < historySize ? String.valueOf((long) archivedCount + nextIndex) : null,
+                historySize);
+    }
+
+    /**
+     * Gets the stream of order lifecycle events. Each subscriber has a bounded buffer of its own
+     * and misses events while it is full, so a slow consumer never holds up intake or delivery.
+     * @return the event publisher
+     */
+    @Override
+    public Flow.Publisher<OrderEvent> getOrderEvents()
+    {
+        return orderEvents;
+    }
+
+    /**
+     * Gets the orders placed in a time range, reading only the histories of the customers the
+     * order time index lists for the range
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the orders placed in the range, oldest first
+     * @throws IOException if the history could not be read
+     * @throws IllegalArgumentException if the range ends before it starts
+     */
+    @Override
+    public List<Order> getOrdersPlacedBetween(LocalDateTime from, LocalDateTime to) throws IOException
+    {
+        validateTimeRange(from, to);
+        return customerHistory.getOrdersBetween(from, to);
+    }
+
+    /**
+     * Gets every queued order
+     * @return a copy of the queue, head first
+     */
+    @Override
+    public List<Order> getPendingOrders()
+    {
+        return new ArrayList<Order>(orderQueue.values());
+    }
+
+    /**
+     * Gets one page of the queue from the meal type index, which holds every queued order by id, so
+     * only the orders on the page are visited. The token is the order id the next page starts from.
+     * @param pageToken the token of the page to read, from the previous page, or null for the first page
+     * @param pageSize the most orders on the page
+     * @return the page of orders, head of the queue first
+     * @throws IllegalArgumentException if the page token is not one this service issued or the page size is not positive
+     */
+    @Override
+    public OrderPage getPendingOrdersPage(String pageToken, int pageSize)
+    {
+        long afterOrderId = parsePageToken(pageToken, pageSize) - 1;
+        List<Order> orders = mealTypeIndex.getOrdersAfter(afterOrderId, pageSize + 1);
+        String nextPageToken = null;
+        if (orders.size() > pageSize)
+        {
+            orders.remove(pageSize);
+            nextPageToken = String.valueOf(orders.get(pageSize - 1).getOrderId() + 1);
+        }
+        return new OrderPage(orders, nextPageToken, Math.max(orders.size(), mealTypeIndex.getTotalCount()));
+    }
+
+    /**
+     * Gets how long loading the snapshot and replaying the journal took at startup
+     * @return the recovery time in milliseconds
+     */
+    @Override
+    public long getRecoveryTimeMillis()
+    {
+        return recoveryTimeMillis;
+    }
+
+    /**
+     * Gets the number of orders turned away by admission control since startup
+     * @return the rejected order count
+     */
+    @Override
+    public long getRejectedOrderCount()
+    {
+        return admissionController.getRejectedCount();
+    }
+
+    /**
+     * Checks whether any customer has order history
+     * @return true if at least one order has ever been placed
+     */
+    @Override
+    public boolean hasCustomerHistory()
+    {
+        return !customerHistory.isEmpty();
+    }
+
+    /**
+     * Checks whether a customer has order history, live or archived
+     * @param customerName the customer name, in any case
+     * @return true if the customer has placed at least one order
+     */
+    @Override
+    public boolean hasCustomerHistory(String customerName)
+    {
+        return customerHistory.containsCustomer(customerName.toLowerCase());
+    }
+
+    /**
+     * Checks whether the queue is empty
+     * @return true if there are no orders waiting
+     */
+    @Override
+    public boolean isQueueEmpty()
+    {
+        return orderQueue.isEmpty();
+    }
+
+    /**
+     * Loads the list of customers with stored history, without reading their orders
+     */
+    private void loadCustomerHistoryFromFile()
+    {
+        try
+        {
+            customerHistory.open();
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not load customer history.");
+        }
+    }
+
+    /**
+     * Loads orders from the snapshot file
+     * @param loadedOrders the list the snapshot's orders are added to, head first
+     * @return the first journal generation not covered by the loaded orders
+     */
+    private long loadOrdersFromFile(List<Order> loadedOrders)
+    {
+        try
+        {
+            return snapshotStore.readOrders(loadedOrders);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not load previous orders. " + ORDERS_FILE
+                    + " is kept as it is and no new snapshot will be written over it.");
+            return 0;
+        }
+    }
+
+    /**
+     * Converts data files written by Java serialization in earlier versions to the current
+     * formats, if there are any
+     * @return true if legacy data files were found
+     */
+    public static boolean migrateLegacyData()
+    {
+        LegacyMigrator migrator = new LegacyMigrator(ORDERS_FILE, LEGACY_CUSTOMERS_FILE, CUSTOMERS_DIRECTORY);
+        try
+        {
+            if (!migrator.isMigrationNeeded())
+            {
+                return false;
+            }
+            System.out.println("Migrating data files from the previous version...");
+            migrator.migrate();
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not migrate legacy data files. " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Normalises a delivery address so the same address typed differently groups together:
+     * lower case, punctuation removed and runs of whitespace collapsed
+     * @param deliveryAddress the address as entered
+     * @return the normalised address
+     */
+    private static String normalizeAddress(String deliveryAddress)
+    {
+        String withoutPunctuation = ADDRESS_PUNCTUATION.matcher(deliveryAddress.toLowerCase()).replaceAll(" ");
+        return WHITESPACE_RUN.matcher(withoutPunctuation.trim()).replaceAll(" ");
+    }
+
+    /**
+     * Reads a page token issued by this service
+     * @param pageToken the page token, or null for the first page
+     * @param pageSize the page size asked for with it
+     * @return the position the token stands for, 0 for the first page
+     * @throws IllegalArgumentException if the token is not a position or the page size is not positive
+     */
+    private static long parsePageToken(String pageToken, int pageSize)
+    {
+        if (pageSize < 1)
+        {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        if (pageToken == null)
+        {
+            return 0;
+        }
+
+        try
+        {
+            long position = Long.parseLong(pageToken);
+            if (position >= 0)
+            {
+                return position;
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid page token: " + pageToken);
+    }
+
+    /**
+     * Reads a whole-number setting from a system property, warning about and ignoring a value that is
+     * not a number or is below the minimum
+     * @param property the system property name
+     * @param defaultValue the value used if the property is not set or not valid
+     * @param minimum the smallest valid value
+     * @return the setting
+     */
+    private static int readSetting(String property, int defaultValue, int minimum)
+    {
+        String value = System.getProperty(property);
+        if (value == null)
+        {
+            return defaultValue;
+        }
+        try
+        {
+            int setting = Integer.parseInt(value.trim());
+            if (setting >= minimum)
+            {
+                return setting;
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            // Reported below
+        }
+        System.out.println("Warning: Could not use " + property + "=" + value + ", using " + defaultValue + ".");
+        return defaultValue;
+    }
+
+    /**
+     * Intake stage that adds the order to its customer's history. An order the history could not take
+     * is taken out of the queue again, as nothing about it has been journaled yet.
+     * @param order the queued order
+     */
+    private void recordHistory(Order order)
+    {
+        try
+        {
+            customerHistory.append(order);
+        }
+        catch (RuntimeException e)
+        {
+            withdrawOrders(Collections.singletonList(order));
+            throw e;
+        }
+    }
+
+    /**
+     * Intake stage that queues the order's journal record, publishes its created event and then sends it to the kitchen.
+     * None of these can fail, as validation has already checked that the kitchen can prepare every food item.
+     * An order is only delivered once the kitchen has prepared it, so its delivery record can
+     * never be written ahead of this one. An order queued just before a checkpoint can have its
+     * record in the next segment as well as in the snapshot; replay keys orders by id, so it is
+     * still restored once.
+     * @param order the queued order
+     */
+    private void persistOrder(Order order)
+    {
+        stateLock.readLock().lock();
+        try
+        {
+            journalWriter.enqueueAdd(order);
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+        orderEvents.publish(OrderEventType.CREATED, order);
+        sendToKitchen(order);
+    }
+
+    /**
+     * Adds a new order to the queue and customer history and sends it to the kitchen, waiting until
+     * it has passed every intake stage. Safe to call from several terminals at once.
+     * @param order the order to add
+     * @throws IllegalArgumentException if the order has no customer name, no order time, no food items
+     *         or a food item the kitchen cannot prepare
+     * @throws OrderRejectedException if the queue is full or orders are arriving too fast
+     */
+    @Override
+    public void placeOrder(Order order)
+    {
+        try
+        {
+            submitOrder(order).join();
+        }
+        catch (CompletionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Adds a batch of new orders in one pass, bypassing the per-order intake stages. Every order is
+     * validated before any is placed, the batch is admitted against the queue depth as a whole, and
+     * all of its journal records are queued as one write, so the batch costs a single flush. If the
+     * batch could not be added to the customer history it is taken out of the queue again before
+     * anything is journaled.
+     * @param orders the orders to place, in queue order
+     * @throws IllegalArgumentException if any order has no customer name, no order time, no food items
+     *         or a food item the kitchen cannot prepare
+     * @throws OrderRejectedException if the batch would overfill the queue
+     */
+    @Override
+    public void placeOrders(Collection<Order> orders)
+    {
+        List<Order> batch = new ArrayList<Order>(orders);
+        for (int i = 0; i < batch.size(); i++)
+        {
+            String problem = findProblem(batch.get(i));
+            if (problem != null)
+            {
+                throw new IllegalArgumentException("Order " + (i + 1) + ": " + problem);
+            }
+        }
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        admissionController.admitBatch(batch.size());
+        for (Order order : batch)
+        {
+            priceOrder(order);
+        }
+
+        stateLock.readLock().lock();
+        try
+        {
+            for (Order order : batch)
+            {
+                order.setOrderId(nextOrderId.getAndIncrement());
+                orderQueue.put(order.getOrderId(), order);
+            }
+            customerNameIndex.addAll(batch);
+            mealTypeIndex.addAll(batch);
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+
+        try
+        {
+            for (Order order : batch)
+            {
+                customerHistory.append(order);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            withdrawOrders(batch);
+            throw e;
+        }
+
+        stateLock.readLock().lock();
+        try
+        {
+            journalWriter.enqueueAddBatch(batch);
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+        for (Order order : batch)
+        {
+            orderEvents.publish(OrderEventType.CREATED, order);
+            sendToKitchen(order);
+        }
+    }
+
+    /**
+     * Intake stage that prices every food item from its current toppings and recalculates the order totals
+     * @param order the validated order
+     */
+    private void priceOrder(Order order)
+    {
+        for (Food foodItem : order.getFoodItems())
+        {
+            foodItem.setPrice(foodItem.calculatePrice());
+        }
+        order.recalculateTotals();
+    }
+
+    /**
+     * Re-applies the journal records written since the order snapshot was taken and fills the queue
+     * @param queueGeneration the first generation not covered by the order snapshot
+     * @param loadedOrders the orders loaded from the snapshot, head first
+     * @return the number of journal records replayed
+     */
+    private int replayJournal(long queueGeneration, List<Order> loadedOrders)
+    {
+        Map<Long, Order> pendingOrders = new LinkedHashMap<Long, Order>();
+        for (Order order : loadedOrders)
+        {
+            restoreOrderId(order);
+            pendingOrders.put(order.getOrderId(), order);
+        }
+
+        int replayedRecords = 0;
+        try
+        {
+            replayedRecords = orderJournal.replay(queueGeneration, new JournalReplayListener()
+            {
+                @Override
+                public void onOrderAdded(Order order)
+                {
+                    restoreOrderId(order);
+                    pendingOrders.put(order.getOrderId(), order);
+                }
+
+                @Override
+                public void onOrderDelivered(long orderId)
+                {
+                    if (orderId != 0)
+                    {
+                        pendingOrders.remove(orderId);
+                    }
+                    else if (!pendingOrders.isEmpty())
+                    {
+                        pendingOrders.remove(pendingOrders.keySet().iterator().next());
+                    }
+                }
+            });
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not replay order journal.");
+        }
+
+        orderQueue.putAll(pendingOrders);
+        customerNameIndex.addAll(pendingOrders.values());
+        mealTypeIndex.addAll(pendingOrders.values());
+        return replayedRecords;
+    }
+
+    /**
+     * Prints how the previous session's orders were recovered
+     * @param replayedRecords the number of journal records replayed
+     */
+    private void reportRecovery(int replayedRecords)
+    {
+        if (orderJournal.getDiscardedBytes() > 0)
+        {
+            System.out.println("Warning: Discarded " + orderJournal.getDiscardedBytes()
+                    + " bytes of incomplete journal records.");
+        }
+        System.out.println("Recovered " + orderQueue.size() + " pending orders (" + replayedRecords
+                + " journal records replayed) in " + recoveryTimeMillis + " ms.");
+    }
+
+    /**
+     * Gives a recovered order an id, or moves the id counter past the id it already has.
+     * Orders from files written before orders had ids are numbered in load order, which is
+     * the same on every restart, so journal records written afterwards still refer to them.
+     * @param order the recovered order
+     */
+    private void restoreOrderId(Order order)
+    {
+        if (order.getOrderId() == 0)
+        {
+            order.setOrderId(nextOrderId.getAndIncrement());
+        }
+        else
+        {
+            nextOrderId.accumulateAndGet(order.getOrderId() + 1, Math::max);
+        }
+    }
+
+    /**
+     * Finds the queued orders whose customer name contains the given text, ignoring case. Text of at
+     * least a trigram is looked up in the customer name index, so only orders of customers whose names
+     * could match are touched; shorter text matches most of the queue, so the queue is scanned instead.
+     * @param customerName the text to search for
+     * @return the matching orders, head of the queue first
+     */
+    @Override
+    public List<Order> searchOrdersByCustomer(String customerName)
+    {
+        if (customerName.length() >= CustomerNameIndex.GRAM_LENGTH)
+        {
+            return customerNameIndex.search(customerName);
+        }
+
+        String searchName = customerName.toLowerCase();
+        List<Order> matchingOrders = new ArrayList<Order>();
+        for (Order order : orderQueue.values())
+        {
+            if (order.getCustomerName().toLowerCase().contains(searchName))
+            {
+                matchingOrders.add(order);
+            }
+        }
+        return matchingOrders;
+    }
+
+    /**
+     * Sends an order to the kitchen, making it ready for delivery and publishing its ready event once
+     * every food item is prepared
+     * @param order the queued order
+     */
+    private void sendToKitchen(Order order)
+    {
+        kitchenScheduler.prepare(order).thenAccept(preparedOrder ->
+        {
+            readyOrders.offer(preparedOrder);
+            orderEvents.publish(OrderEventType.READY, preparedOrder);
+        });
+    }
+
+    /**
+     * Submits a new order to the intake pipeline: validate, price, enqueue, index in the customer
+     * history and persist, each stage on its own thread. Admission control runs first on the
+     * caller's thread, so an order turned away at peak load never enters the pipeline.
+     * @param order the order to place
+     * @return a future completed with the order once it is queued, its journal record is queued and
+     *         it has been sent to the kitchen, or completed exceptionally if it was rejected
+     * @throws OrderRejectedException if the queue is full or orders are arriving too fast
+     */
+    @Override
+    public CompletableFuture<Order> submitOrder(Order order)
+    {
+        admissionController.admit(1);
+        try
+        {
+            return intakePipeline.submit(order);
+        }
+        catch (IllegalStateException e)
+        {
+            admissionController.ordersWithdrawn(1);
+            throw e;
+        }
+    }
+
+    /**
+     * Finishes placing the orders already submitted, then stops the kitchen, completes the event stream, stops the background archiver and checkpoints, writes a final snapshot of the queue
+     * and closes the journal and the customer history
+     */
+    @Override
+    public void shutdown()
+    {
+        intakePipeline.shutdown();
+        kitchenScheduler.shutdown();
+        orderEvents.close();
+        historyArchiver.shutdown();
+        journalWriter.flush();
+        checkpointer.shutdown();
+        try
+        {
+            checkpointer.checkpoint();
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not save orders.");
+        }
+        journalWriter.close();
+        orderJournal.close();
+        try
+        {
+            customerHistory.close();
+        }
+        catch (IOException e)
+        {
+            System.out.println("Warning: Could not write the customer history indexes.");
+        }
+    }
+
+    /**
+     * Intake stage that rejects orders that cannot be placed, giving back their place in the queue
+     * @param order the submitted order
+     * @throws IllegalArgumentException if the order has no customer name, no order time, no food items
+     *         or a food item the kitchen cannot prepare
+     */
+    private void validateOrder(Order order)
+    {
+        String problem = findProblem(order);
+        if (problem != null)
+        {
+            admissionController.ordersWithdrawn(1);
+            throw new IllegalArgumentException(problem);
+        }
+    }
+
+    /**
+     * Checks that a time range is complete and does not end before it starts
+     * @param from the start of the range
+     * @param to the end of the range
+     * @throws IllegalArgumentException if either end is missing or the range ends before it starts
+     */
+    private static void validateTimeRange(LocalDateTime from, LocalDateTime to)
+    {
+        if (from == null || to == null)
+        {
+            throw new IllegalArgumentException("A time range needs both a start and an end");
+        }
+        if (to.isBefore(from))
+        {
+            throw new IllegalArgumentException("A time range cannot end before it starts");
+        }
+    }
+
+    /**
+     * Takes orders that could not be placed back out of the queue and its indexes before their journal
+     * records are queued, and gives back their places
+     * @param orders the queued orders
+     */
+    private void withdrawOrders(Collection<Order> orders)
+    {
+        stateLock.readLock().lock();
+        try
+        {
+            for (Order order : orders)
+            {
+                orderQueue.remove(order.getOrderId());
+            }
+            customerNameIndex.removeAll(orders);
+            mealTypeIndex.removeAll(orders);
+        }
+        finally
+        {
+            stateLock.readLock().unlock();
+        }
+        admissionController.ordersWithdrawn(orders.size());
+    }
+}
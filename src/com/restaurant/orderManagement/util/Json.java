@@ -0,0 +1,349 @@
+package com.restaurant.orderManagement.util;
+
+import java.util.*;
+
+/**
+ * Minimal JSON reader and writer helpers for the HTTP endpoint and order imports. Objects are read into
+ * LinkedHashMaps, arrays into ArrayLists, numbers into Doubles, and strings, booleans
+ * and null into their Java equivalents. Objects and arrays may nest at most MAX_DEPTH levels
+ * deep, so a request body or import file cannot exhaust the stack of the recursive reader.
+ * Author: Liaw Hang Sheng
+ * Version: 1.0
+ */
+public final class Json
+{
+    private static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int position;
+    private int depth;
+
+    /**
+     * Constructor for Json
+     * @param text the JSON text to read
+     */
+    private Json(String text)
+    {
+        this.text = text;
+        this.position = 0;
+        this.depth = 0;
+    }
+
+    /**
+     * Reads one expected character, skipping whitespace before it
+     * @param expected the character that must come next
+     * @throws IllegalArgumentException if a different character or the end of the text comes next
+     */
+    private void expect(char expected)
+    {
+        skipWhitespace();
+        if (position >= text.length() || text.charAt(position) != expected)
+        {
+            throw error("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    /**
+     * Creates the exception for malformed JSON at the current position
+     * @param message what was wrong
+     * @return the exception to throw
+     */
+    private IllegalArgumentException error(String message)
+    {
+        return new IllegalArgumentException("Invalid JSON at position " + position + ": " + message);
+    }
+
+    /**
+     * Parses a JSON document
+     * @param text the JSON text
+     * @return the parsed value
+     * @throws IllegalArgumentException if the text is not valid JSON
+     */
+    public static Object parse(String text)
+    {
+        Json json = new Json(text);
+        Object value = json.readValue();
+        json.skipWhitespace();
+        if (json.position != text.length())
+        {
+            throw json.error("Unexpected trailing content");
+        }
+        return value;
+    }
+
+    /**
+     * Writes a string as a quoted JSON string
+     * @param value the string to write, or null
+     * @return the JSON string literal
+     */
+    public static String quote(String value)
+    {
+        if (value == null)
+        {
+            return "null";
+        }
+
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char character = value.charAt(i);
+            switch (character)
+            {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20)
+                    {
+                        builder.append(String.format("\\u%04x", (int) character));
+                    }
+                    else
+                    {
+                        builder.append(character);
+                    }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Reads a JSON array
+     * @return the array elements
+     */
+    private List<Object> readArray()
+    {
+        expect('[');
+        List<Object> elements = new ArrayList<Object>();
+        skipWhitespace();
+        if (position < text.length() && text.charAt(position) == ']')
+        {
+            position++;
+            return elements;
+        }
+
+        while (true)
+        {
+            elements.add(readValue());
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == ',')
+            {
+                position++;
+                continue;
+            }
+            expect(']');
+            return elements;
+        }
+    }
+
+    /**
+     * Reads a literal word such as true, false or null
+     * @param word the literal expected
+     * @param value the value the literal stands for
+     * @return the value
+     */
+    private Object readLiteral(String word, Object value)
+    {
+        if (!text.startsWith(word, position))
+        {
+            throw error("Unexpected value");
+        }
+        position += word.length();
+        return value;
+    }
+
+    /**
+     * Reads a JSON object or array one level deeper than the current value
+     * @param opening the opening character, '{' or '['
+     * @return the members of the object or the elements of the array
+     * @throws IllegalArgumentException if the value would be nested more than MAX_DEPTH levels deep
+     */
+    private Object readNested(char opening)
+    {
+        if (depth == MAX_DEPTH)
+        {
+            throw error("Nested more than " + MAX_DEPTH + " levels deep");
+        }
+        depth++;
+        Object value = opening == '{' ? readObject() : readArray();
+        depth--;
+        return value;
+    }
+
+    /**
+     * Reads a JSON number
+     * @return the number as a Double
+     */
+    private Double readNumber()
+    {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0)
+        {
+            position++;
+        }
+
+        try
+        {
+            return Double.valueOf(text.substring(start, position));
+        }
+        catch (NumberFormatException e)
+        {
+            throw error("Invalid number");
+        }
+    }
+
+    /**
+     * Reads a JSON object
+     * @return the members in the order they appear
+     */
+    private Map<String, Object> readObject()
+    {
+        expect('{');
+        Map<String, Object> members = new LinkedHashMap<String, Object>();
+        skipWhitespace();
+        if (position < text.length() && text.charAt(position) == '}')
+        {
+            position++;
+            return members;
+        }
+
+        while (true)
+        {
+            skipWhitespace();
+            String name = readString();
+            expect(':');
+            members.put(name, readValue());
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == ',')
+            {
+                position++;
+                continue;
+            }
+            expect('}');
+            return members;
+        }
+    }
+
+    /**
+     * Reads a JSON string
+     * @return the unescaped string
+     */
+    private String readString()
+    {
+        expect('"');
+        StringBuilder builder = new StringBuilder();
+        while (position < text.length())
+        {
+            char character = text.charAt(position++);
+            if (character == '"')
+            {
+                return builder.toString();
+            }
+            if (character != '\\')
+            {
+                builder.append(character);
+                continue;
+            }
+            if (position >= text.length())
+            {
+                break;
+            }
+
+            char escaped = text.charAt(position++);
+            switch (escaped)
+            {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length())
+                    {
+                        throw error("Invalid unicode escape");
+                    }
+                    try
+                    {
+                        builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw error("Invalid unicode escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    builder.append(escaped);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * Reads any JSON value
+     * @return the value
+     */
+    private Object readValue()
+    {
+        skipWhitespace();
+        if (position >= text.length())
+        {
+            throw error("Unexpected end of input");
+        }
+
+        char character = text.charAt(position);
+        switch (character)
+        {
+            case '{':
+            case '[':
+                return readNested(character);
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            case 'n':
+                return readLiteral("null", null);
+            default:
+                if (character == '-' || Character.isDigit(character))
+                {
+                    return readNumber();
+                }
+                throw error("Unexpected character '" + character + "'");
+        }
+    }
+
+    /**
+     * Moves past any whitespace
+     */
+    private void skipWhitespace()
+    {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+        {
+            position++;
+        }
+    }
+}